@@ -0,0 +1,59 @@
+package com.altimetrik.AgentFlightBookingApplication.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.altimetrik.AgentFlightBookingApplication.dao.Dao;
+import com.altimetrik.AgentFlightBookingApplication.model.flight.Flights;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Parsing a departing flight list, from a String with the DOM parser and from
+ * a stream with the StAX parser
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class DaoBenchmark {
+	@Param({ "100", "1000" })
+	public int flights;
+
+	private String mXml;
+	private byte[] mBytes;
+
+	@Setup
+	public void setup() {
+		mXml = Fixtures.flightsXml("BOS", Fixtures.DATE, flights);
+		mBytes = mXml.getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public Flights addAllFlightsDom() {
+		return Dao.addAllFlights(mXml);
+	}
+
+	@Benchmark
+	public Flights addAllFlightsStream() {
+		return Dao.addAllFlights(new ByteArrayInputStream(mBytes));
+	}
+}
@@ -0,0 +1,94 @@
+package com.altimetrik.AgentFlightBookingApplication.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.altimetrik.AgentFlightBookingApplication.dao.Transport;
+import com.altimetrik.AgentFlightBookingApplication.server.Schedule;
+import com.altimetrik.AgentFlightBookingApplication.server.ServerXml;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Transport answering from a Schedule instead of the reservation server, so
+ * benchmarks measure the application and not the network. Every response is
+ * generated once and served from memory afterwards; POST requests succeed
+ * without changing anything.
+ */
+public final class FixtureTransport implements Transport {
+	private final Schedule mSchedule;
+	private final Map<String, byte[]> mResponses = new ConcurrentHashMap<String, byte[]>();
+	private final AtomicLong mRequests = new AtomicLong();
+
+	/**
+	 * Initializing constructor.
+	 *
+	 * @param schedule
+	 *            the airports, airplanes and flights served
+	 */
+	public FixtureTransport(Schedule schedule) {
+		mSchedule = schedule;
+	}
+
+	public Response get(String url, String teamName) throws IOException {
+		mRequests.incrementAndGet();
+
+		Map<String, String> query = query(url);
+		String type = query.get("list_type");
+		byte[] body;
+		if ("airports".equals(type)) {
+			body = mResponses.computeIfAbsent("airports", key -> bytes(ServerXml.airports(mSchedule.airports())));
+		} else if ("airplanes".equals(type)) {
+			body = mResponses.computeIfAbsent("airplanes", key -> bytes(ServerXml.airplanes(mSchedule.airplanes())));
+		} else if ("departing".equals(type) && query.containsKey("airport") && query.containsKey("day")) {
+			String airport = query.get("airport");
+			String day = query.get("day");
+			body = mResponses.computeIfAbsent(airport + "_" + day,
+					key -> bytes(ServerXml.flights(mSchedule.departing(airport, day))));
+		} else {
+			return new Response(400, new ByteArrayInputStream(new byte[0]), null);
+		}
+
+		return new Response(200, new ByteArrayInputStream(body), null);
+	}
+
+	public Response post(String url, String teamName, String params) throws IOException {
+		mRequests.incrementAndGet();
+		return new Response(200, new ByteArrayInputStream(new byte[0]), null);
+	}
+
+	/**
+	 * @return number of requests answered
+	 */
+	public long requests() {
+		return mRequests.get();
+	}
+
+	private static Map<String, String> query(String url) {
+		Map<String, String> query = new HashMap<String, String>();
+		int start = url.indexOf('?');
+		if (start < 0) {
+			return query;
+		}
+
+		for (String parameter : url.substring(start + 1).split("&")) {
+			int equals = parameter.indexOf('=');
+			if (equals > 0) {
+				query.put(parameter.substring(0, equals), parameter.substring(equals + 1));
+			}
+		}
+		return query;
+	}
+
+	private static byte[] bytes(String xml) {
+		return xml.getBytes(StandardCharsets.UTF_8);
+	}
+}
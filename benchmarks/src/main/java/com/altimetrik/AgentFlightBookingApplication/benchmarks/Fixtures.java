@@ -0,0 +1,102 @@
+package com.altimetrik.AgentFlightBookingApplication.benchmarks;
+
+import com.altimetrik.AgentFlightBookingApplication.dao.FlightCache;
+import com.altimetrik.AgentFlightBookingApplication.dao.ServerInterface;
+import com.altimetrik.AgentFlightBookingApplication.model.airplane.AirplaneCatalog;
+import com.altimetrik.AgentFlightBookingApplication.server.ScheduleGenerator;
+import com.altimetrik.AgentFlightBookingApplication.server.ServerXml;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Networks and XML documents in the format of the reservation server, made by
+ * a ScheduleGenerator from a fixed seed so every run of a benchmark sees the
+ * same data. The airports carry their time zone, so loading them needs no
+ * time zone lookup.
+ */
+public final class Fixtures {
+	/**
+	 * team name used for all requests
+	 */
+	public static final String TEAM = "Sonu";
+
+	/**
+	 * departure date searched by the benchmarks
+	 */
+	public static final String DATE = "2017_05_10";
+
+	/**
+	 * number of airports of the classroom server
+	 */
+	public static final int AIRPORTS = 52;
+
+	private static final double HUB_DENSITY = 0.2;
+	private static final double LOAD_FACTOR = 0.6;
+	private static final long SEED = 509;
+
+	private Fixtures() {
+	}
+
+	/**
+	 * Make the network of a benchmark, May 2017 with the airports given
+	 *
+	 * @param airports
+	 *            number of airports, 52 as the classroom server or more to
+	 *            measure at scale
+	 * @param flightsPerList
+	 *            number of flights in every departing flight list
+	 * @return the network
+	 */
+	public static ScheduleGenerator schedule(int airports, int flightsPerList) {
+		return new ScheduleGenerator(airports, HUB_DENSITY, flightsPerList, 31, "2017_05_01", LOAD_FACTOR, SEED);
+	}
+
+	/**
+	 * Install the network of the classroom airports
+	 *
+	 * @param flightsPerList
+	 *            number of flights in every departing flight list
+	 * @return the transport installed
+	 */
+	public static FixtureTransport install(int flightsPerList) {
+		return install(AIRPORTS, flightsPerList);
+	}
+
+	/**
+	 * Route ServerInterface to a FixtureTransport, load the airports and the
+	 * airplane catalog from it and empty the flight cache
+	 *
+	 * @param airports
+	 *            number of airports
+	 * @param flightsPerList
+	 *            number of flights in every departing flight list
+	 * @return the transport installed
+	 */
+	public static FixtureTransport install(int airports, int flightsPerList) {
+		FixtureTransport transport = new FixtureTransport(schedule(airports, flightsPerList));
+		ServerInterface.INSTANCE.setTransport(transport);
+		ServerInterface.INSTANCE.getAirports(TEAM);
+		AirplaneCatalog.getInstance().load(ServerInterface.INSTANCE.getAirplanes(TEAM));
+		FlightCache.getInstance().invalidateAll();
+		return transport;
+	}
+
+	/**
+	 * Generate the flights departing a classroom airport on a date. The same
+	 * airport and date always give the same flights.
+	 *
+	 * @param airport
+	 *            code of the departure airport
+	 * @param date
+	 *            departure date in yyyy_mm_dd format
+	 * @param count
+	 *            number of flights
+	 * @return the list of departing flights
+	 */
+	public static String flightsXml(String airport, String date, int count) {
+		return ServerXml.flights(schedule(AIRPORTS, count).departing(airport, date));
+	}
+}
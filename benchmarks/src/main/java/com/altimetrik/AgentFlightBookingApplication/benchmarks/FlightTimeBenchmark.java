@@ -0,0 +1,62 @@
+package com.altimetrik.AgentFlightBookingApplication.benchmarks;
+
+import java.text.ParseException;
+import java.time.ZoneId;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.altimetrik.AgentFlightBookingApplication.dao.Dao;
+import com.altimetrik.AgentFlightBookingApplication.model.flight.Flight;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Showing flight times in the local time of their airports
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class FlightTimeBenchmark {
+	private static final String ZONE = "America/New_York";
+
+	private Flight mFlight;
+	private ZoneId mZone;
+
+	@Setup
+	public void setup() {
+		Fixtures.install(1);
+		mFlight = Dao.addAllFlights(Fixtures.flightsXml("BOS", Fixtures.DATE, 1)).get(0);
+		mZone = ZoneId.of(ZONE);
+	}
+
+	@Benchmark
+	public String formattedLocalTimeOfMinute() {
+		return mFlight.formattedLocalTime(mZone, mFlight.getDepartureEpochMinute());
+	}
+
+	@Benchmark
+	public String formattedLocalTimeOfString() throws ParseException {
+		return mFlight.formattedLocalTime(ZONE, mFlight.getDepartureAirportTime());
+	}
+
+	@Benchmark
+	public String localDepTime() throws ParseException {
+		return mFlight.getLocalDepTime();
+	}
+}
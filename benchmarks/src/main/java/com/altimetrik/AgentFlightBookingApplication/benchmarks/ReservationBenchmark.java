@@ -0,0 +1,124 @@
+package com.altimetrik.AgentFlightBookingApplication.benchmarks;
+
+import java.text.ParseException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.altimetrik.AgentFlightBookingApplication.model.flight.Flights;
+import com.altimetrik.AgentFlightBookingApplication.model.reservation.Reservation;
+import com.altimetrik.AgentFlightBookingApplication.model.reservation.Reservations;
+import com.altimetrik.AgentFlightBookingApplication.model.reservation.SortKey;
+import com.altimetrik.AgentFlightBookingApplication.model.search.SearchFlight;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Pricing and sorting the reservations of a search. The sort benchmarks copy
+ * the shuffled results before sorting them, the copy is part of the time
+ * measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ReservationBenchmark {
+	@Param({ "500" })
+	public int reservations;
+
+	private Reservations mResults;
+
+	@Setup
+	public void setup() throws ParseException {
+		Fixtures.install(200);
+
+		SearchFlight search = new SearchFlight("BOS", "LAX", Fixtures.DATE, "Coach", true);
+		search.maxStopOver(2);
+		List<Flights> itineraries = search.search();
+		Collections.shuffle(itineraries, new Random(509));
+
+		mResults = new Reservations();
+		for (int i = 0; i < reservations && i < itineraries.size(); i++) {
+			mResults.add(new Reservation(itineraries.get(i), "Coach", i));
+		}
+	}
+
+	@Benchmark
+	public void totalPrice(Blackhole blackhole) {
+		for (Reservation reservation : mResults) {
+			blackhole.consume(reservation.getTotalPrice());
+		}
+	}
+
+	@Benchmark
+	public void totalTime(Blackhole blackhole) {
+		for (Reservation reservation : mResults) {
+			blackhole.consume(reservation.getTotalTime());
+		}
+	}
+
+	@Benchmark
+	public Reservations sortbyTotalPrice() {
+		Reservations results = copy();
+		results.sortbyTotalPrice(results);
+		return results;
+	}
+
+	@Benchmark
+	public Reservations sortbyTotalFlightTime() {
+		Reservations results = copy();
+		results.sortbyTotalFlightTime(results);
+		return results;
+	}
+
+	@Benchmark
+	public Reservations sortbyDepartureTime() {
+		Reservations results = copy();
+		results.sortbyDepartureTime(results);
+		return results;
+	}
+
+	@Benchmark
+	public Reservations sortbyArrivalTime() {
+		Reservations results = copy();
+		results.sortbyArrivalTime(results);
+		return results;
+	}
+
+	@Benchmark
+	public Reservations sortByPriceDurationDeparture() {
+		Reservations results = copy();
+		results.sortBy(SortKey.PRICE, SortKey.DURATION, SortKey.DEPARTURE);
+		return results;
+	}
+
+	@Benchmark
+	public Reservations copyOnly() {
+		return copy();
+	}
+
+	private Reservations copy() {
+		Reservations results = new Reservations();
+		results.addAll(mResults);
+		return results;
+	}
+}
@@ -0,0 +1,80 @@
+package com.altimetrik.AgentFlightBookingApplication.benchmarks;
+
+import java.text.ParseException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.altimetrik.AgentFlightBookingApplication.dao.FlightCache;
+import com.altimetrik.AgentFlightBookingApplication.model.flight.Flights;
+import com.altimetrik.AgentFlightBookingApplication.model.search.SearchEngine;
+import com.altimetrik.AgentFlightBookingApplication.model.search.SearchFlight;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * SearchFlight.search with ServerInterface answered by a FixtureTransport.
+ * The warm benchmark finds every schedule in the flight cache and measures
+ * the search alone; the cold one empties the cache first, so it includes
+ * parsing the departing flight lists. Run with -p airports=520,5200 to search
+ * networks 10 and 100 times the size of the classroom server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class SearchBenchmark {
+	@Param({ "BFS", "TIME_EXPANDED", "PARETO" })
+	public SearchEngine engine;
+
+	@Param({ "1", "2" })
+	public int stops;
+
+	@Param({ "200" })
+	public int flightsPerList;
+
+	@Param({ "52" })
+	public int airports;
+
+	@Setup
+	public void setup() throws ParseException {
+		Fixtures.install(airports, flightsPerList);
+		search(); // fill the flight cache
+	}
+
+	@Benchmark
+	public List<Flights> searchWarm() throws ParseException {
+		return search();
+	}
+
+	@Benchmark
+	public List<Flights> searchCold() throws ParseException {
+		FlightCache.getInstance().invalidateAll();
+		return search();
+	}
+
+	private List<Flights> search() throws ParseException {
+		SearchFlight search = new SearchFlight("BOS", "LAX", Fixtures.DATE, "Coach", stops > 0);
+		search.engine(engine);
+		if (stops > 0) {
+			search.maxStopOver(stops);
+		}
+		return search.search();
+	}
+}
@@ -1,7 +1,9 @@
 package com.altimetrik.AgentFlightBookingApplication.controller;
 
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
 
 import com.altimetrik.AgentFlightBookingApplication.model.reservation.Reservation;
 import com.altimetrik.AgentFlightBookingApplication.model.reservation.Reservations;
@@ -59,20 +61,30 @@ public class SearchController {
 		searchResult.showSearchResult();
 		searchResult.showSortingResult();
 
+		// both ways of a round trip are booked under one server lock
+		List<Reservation> selected = new ArrayList<Reservation>(2);
 		int outboundReservationIndex = searchResult.setOutboundReservation();
 		for (Reservation reservation : result.get(0)) {
 			if (outboundReservationIndex == reservation.getIndex()) {
-				reservation.confirmReservation();
+				selected.add(reservation);
 			}
 		}
 
 		if (search.roundTrip() && result.size() > 1) {
 			int inboundReservationIndex = searchResult.setInboundReservation();
-			for (Reservation reservation : result.get(0)) {
+			for (Reservation reservation : result.get(1)) {
 				if (inboundReservationIndex == reservation.getIndex()) {
-					reservation.confirmReservation();
+					selected.add(reservation);
 				}
 			}
 		}
+
+		// one customer, the same flights booked again for them are a
+		// resubmission
+		String sessionId = UUID.randomUUID().toString();
+		for (Reservation reservation : selected) {
+			reservation.sessionId(sessionId);
+		}
+		Reservation.confirmReservations(selected);
 	}
 }
@@ -0,0 +1,166 @@
+package com.altimetrik.AgentFlightBookingApplication.dao;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Process wide table of the reservations booked lately, by idempotency key. A
+ * reservation submitted again, by a double click or a retry after a timeout,
+ * gets the outcome of the first submission instead of buying the seats twice;
+ * while the first is still being booked the duplicate waits for it.
+ *
+ * Bookings the server confirmed or did not answer are remembered, only a
+ * booking the server refused may be tried again. A booking whose answer was
+ * lost may have bought the seats, so a retry within the window gets its
+ * failure instead of being sent again. Entries are dropped after the time window and the oldest entry
+ * is dropped once the table is full. Bookings still in progress are never
+ * dropped, the table grows past its size while they wait for the server. The
+ * size and window are set by the system properties booking.dedup.size and
+ * booking.dedup.window.seconds.
+ */
+public final class BookingDedup {
+	private static final BookingDedup mInstance = new BookingDedup(Integer.getInteger("booking.dedup.size", 4096),
+			Long.getLong("booking.dedup.window.seconds", 600), TimeUnit.SECONDS);
+
+	private final int mMaxEntries;
+	private final long mWindowNanos;
+	private final LinkedHashMap<String, Booking> mEntries;
+
+	private final AtomicLong mDuplicates = new AtomicLong();
+
+	/**
+	 * outcome of a booking and when it was submitted
+	 */
+	private static final class Booking {
+		final CompletableFuture<Boolean> mOutcome;
+		final long mSubmitted = System.nanoTime();
+
+		Booking(CompletableFuture<Boolean> outcome) {
+			mOutcome = outcome;
+		}
+	}
+
+	/**
+	 * get the shared table
+	 *
+	 * @return the process wide booking table
+	 */
+	public static BookingDedup getInstance() {
+		return mInstance;
+	}
+
+	/**
+	 * Initializing constructor.
+	 *
+	 * @param maxEntries
+	 *            number of bookings remembered at most
+	 * @param window
+	 *            time a booking is remembered
+	 * @param unit
+	 *            unit of window
+	 */
+	public BookingDedup(int maxEntries, long window, TimeUnit unit) {
+		if (maxEntries <= 0 || window <= 0) {
+			throw new IllegalArgumentException(maxEntries + " entries, window " + window);
+		}
+
+		mMaxEntries = maxEntries;
+		mWindowNanos = unit.toNanos(window);
+		mEntries = new LinkedHashMap<String, Booking>();
+	}
+
+	/**
+	 * Claim a booking. The first caller of a key gets null and books the
+	 * reservation, then reports the outcome with complete; later callers get
+	 * the outcome of the first.
+	 *
+	 * @param key
+	 *            idempotency key of the reservation
+	 * @param outcome
+	 *            completed by the caller with the outcome of its booking
+	 * @return null if the caller is to book the reservation, else completes
+	 *         with the outcome of the booking submitted first
+	 */
+	public synchronized CompletableFuture<Boolean> claim(String key, CompletableFuture<Boolean> outcome) {
+		expire();
+		Booking booking = mEntries.get(key);
+		if (booking != null) {
+			mDuplicates.incrementAndGet();
+			return booking.mOutcome;
+		}
+
+		mEntries.put(key, new Booking(outcome));
+		return null;
+	}
+
+	/**
+	 * Report the outcome of a booking claimed, duplicates waiting get whether
+	 * it was bought. A refused booking is forgotten, so it can be tried again.
+	 *
+	 * @param key
+	 *            idempotency key of the reservation
+	 * @param outcome
+	 *            the future given to claim
+	 * @param result
+	 *            what came of the purchase of the booking
+	 */
+	public void complete(String key, CompletableFuture<Boolean> outcome, PurchaseOutcome result) {
+		if (result == PurchaseOutcome.REFUSED) {
+			synchronized (this) {
+				Booking booking = mEntries.get(key);
+				if (booking != null && booking.mOutcome == outcome) {
+					mEntries.remove(key);
+				}
+			}
+		}
+		outcome.complete(result.isBought());
+	}
+
+	/**
+	 * @return number of duplicate submissions answered from the table
+	 */
+	public long duplicates() {
+		return mDuplicates.get();
+	}
+
+	/**
+	 * @return number of bookings remembered
+	 */
+	public synchronized int size() {
+		return mEntries.size();
+	}
+
+	/**
+	 * Forget all bookings
+	 */
+	public synchronized void clear() {
+		mEntries.clear();
+	}
+
+	/**
+	 * drop the entries older than the window and the oldest entries until
+	 * there is room for one more, they are in submission order; bookings
+	 * still in progress are kept
+	 */
+	private void expire() {
+		long now = System.nanoTime();
+		Iterator<Booking> entries = mEntries.values().iterator();
+		while (entries.hasNext()) {
+			Booking booking = entries.next();
+			if (now - booking.mSubmitted < mWindowNanos && mEntries.size() < mMaxEntries) {
+				break;
+			}
+			if (booking.mOutcome.isDone()) {
+				entries.remove();
+			}
+		}
+	}
+}
@@ -0,0 +1,390 @@
+package com.altimetrik.AgentFlightBookingApplication.dao;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+import com.altimetrik.AgentFlightBookingApplication.utils.WorkerPools;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Append-only journal of ticket purchases. An intent, the team and the flight
+ * data sent, is written before buyTickets is posted and an outcome after the
+ * server answered. A purchase whose answer was lost is abandoned: its caller
+ * was told it failed and may buy the seats again, so it must not be sent
+ * again. An intent without outcome is a purchase a process death cut off,
+ * ServerInterface.replayJournal sends those again at the next start.
+ *
+ * Records are written to a memory-mapped segment file: a magic number and
+ * format version, then records of a length, the record and a CRC32 of it.
+ * Writes land in the page cache at once and survive the process dying; the
+ * segment is forced to disk by a background task every sync interval, so
+ * purchases never wait for the disk and all writes of an interval share one
+ * sync. A full segment is replaced by a new one holding only the intents
+ * still pending, written to a temporary file and moved in place.
+ *
+ * The location, segment size and sync interval are set by the system
+ * properties booking.journal, booking.journal.size and
+ * booking.journal.sync.ms.
+ */
+public final class BookingJournal implements Closeable {
+	private static final int MAGIC = 0x4146424A; // "AFBJ"
+	private static final short VERSION = 1;
+	private static final int HEADER = 6;
+
+	private static final byte INTENT = 1;
+	private static final byte OUTCOME = 2;
+
+	// results of an outcome record
+	private static final byte REFUSED = 0;
+	private static final byte BOUGHT = 1;
+	private static final byte ABANDONED = 2;
+
+	private final Path mFile;
+	private final int mSize;
+	private volatile MappedByteBuffer mBuffer;
+	private int mEnd; // offset the next record is written at
+	private long mNextId = 1;
+	private final Map<Long, Intent> mPending = new LinkedHashMap<Long, Intent>();
+
+	private final AtomicBoolean mDirty = new AtomicBoolean();
+	private final ScheduledFuture<?> mSync;
+
+	/**
+	 * Purchase written to the journal that has no outcome yet
+	 */
+	public static final class Intent {
+		private final long mId;
+		private final long mTime;
+		private final String mTeamName;
+		private final String mFlightData;
+
+		Intent(long id, long time, String teamName, String flightData) {
+			mId = id;
+			mTime = time;
+			mTeamName = teamName;
+			mFlightData = flightData;
+		}
+
+		/**
+		 * @return the number of the intent in the journal
+		 */
+		public long id() {
+			return mId;
+		}
+
+		/**
+		 * @return the time the intent was written, in milliseconds since
+		 *         the epoch
+		 */
+		public long time() {
+			return mTime;
+		}
+
+		/**
+		 * @return name of the team buying
+		 */
+		public String teamName() {
+			return mTeamName;
+		}
+
+		/**
+		 * @return the flights and seating bought, as sent to buyTickets
+		 */
+		public String flightData() {
+			return mFlightData;
+		}
+	}
+
+	/**
+	 * get the journal location
+	 *
+	 * @return the file set by booking.journal, by default
+	 *         .agentflightbooking/booking.journal in the user's home
+	 */
+	public static Path defaultPath() {
+		String path = System.getProperty("booking.journal");
+		if (path != null) {
+			return Paths.get(path);
+		}
+		return Paths.get(System.getProperty("user.home"), ".agentflightbooking", "booking.journal");
+	}
+
+	/**
+	 * Open a journal with the segment size and sync interval set by system
+	 * properties, creating it if needed
+	 *
+	 * @param file
+	 *            the journal file
+	 * @return the journal with the intents pending in the file
+	 * @throws IOException
+	 *             if the file cannot be mapped or is not a journal
+	 */
+	public static BookingJournal open(Path file) throws IOException {
+		return new BookingJournal(file, Integer.getInteger("booking.journal.size", 1 << 20),
+				Long.getLong("booking.journal.sync.ms", 20));
+	}
+
+	/**
+	 * Initializing constructor, opens or creates a journal.
+	 *
+	 * @param file
+	 *            the journal file
+	 * @param size
+	 *            size of the segment in bytes
+	 * @param syncMillis
+	 *            time between two syncs to disk
+	 * @throws IOException
+	 *             if the file cannot be mapped or is not a journal
+	 */
+	public BookingJournal(Path file, int size, long syncMillis) throws IOException {
+		if (size < 1024)
+			throw new IllegalArgumentException("size " + size);
+		if (syncMillis <= 0)
+			throw new IllegalArgumentException("syncMillis " + syncMillis);
+
+		mFile = file;
+		Files.createDirectories(file.toAbsolutePath().getParent());
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			mSize = (int) Math.max(size, Math.min(channel.size(), Integer.MAX_VALUE));
+			mBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, mSize);
+		}
+
+		if (mBuffer.getInt(0) == 0) {
+			mBuffer.putInt(0, MAGIC).putShort(4, VERSION);
+			mDirty.set(true);
+		} else if (mBuffer.getInt(0) != MAGIC || mBuffer.getShort(4) != VERSION) {
+			throw new IOException(file + " is not a booking journal");
+		}
+		read();
+
+		mSync = WorkerPools.timer().scheduleWithFixedDelay(this::sync, syncMillis, syncMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Write the intent of a purchase, before it is sent
+	 *
+	 * @param teamName
+	 *            name of the team buying
+	 * @param flightData
+	 *            the flights and seating bought, as sent to buyTickets
+	 * @return the number of the intent, -1 if it could not be written
+	 */
+	public synchronized long intent(String teamName, String flightData) {
+		Intent intent = new Intent(mNextId, System.currentTimeMillis(), teamName, flightData);
+		if (!append(encode(intent))) {
+			return -1;
+		}
+		mNextId++;
+		mPending.put(intent.mId, intent);
+		return intent.mId;
+	}
+
+	/**
+	 * Write the outcome of a purchase, after the server answered
+	 *
+	 * @param id
+	 *            the number of the intent
+	 * @param bought
+	 *            true if the server confirmed the purchase
+	 */
+	public void outcome(long id, boolean bought) {
+		finish(id, bought ? BOUGHT : REFUSED);
+	}
+
+	/**
+	 * Write that the answer to a purchase was lost and its caller was told it
+	 * failed, so it is not replayed
+	 *
+	 * @param id
+	 *            the number of the intent
+	 */
+	public void abandon(long id) {
+		finish(id, ABANDONED);
+	}
+
+	/**
+	 * @return the purchases whose outcome is not known, oldest first
+	 */
+	public synchronized List<Intent> pending() {
+		return new ArrayList<Intent>(mPending.values());
+	}
+
+	/**
+	 * Force the records written so far to disk. Done every sync interval, call
+	 * it to wait for the disk.
+	 */
+	public void sync() {
+		if (mDirty.getAndSet(false)) {
+			mBuffer.force();
+		}
+	}
+
+	/**
+	 * Stop the background sync and sync a last time
+	 */
+	public void close() {
+		mSync.cancel(false);
+		sync();
+	}
+
+	/**
+	 * read the records of the segment, stopping at the first that is not
+	 * complete
+	 */
+	private void read() {
+		int position = HEADER;
+		while (position + 8 <= mSize) {
+			int length = mBuffer.getInt(position);
+			if (length <= 0 || length > mSize - position - 8) {
+				break;
+			}
+
+			ByteBuffer record = mBuffer.duplicate();
+			record.limit(position + 4 + length).position(position + 4);
+			CRC32 crc = new CRC32();
+			crc.update(record.duplicate());
+			if ((int) crc.getValue() != mBuffer.getInt(position + 4 + length)) {
+				break;
+			}
+
+			byte type = record.get();
+			long id = record.getLong();
+			if (type == INTENT) {
+				long time = record.getLong();
+				String teamName = string(record, record.getShort());
+				String flightData = string(record, record.getInt());
+				mPending.put(id, new Intent(id, time, teamName, flightData));
+			} else if (type == OUTCOME) {
+				mPending.remove(id);
+			}
+			mNextId = Math.max(mNextId, id + 1);
+			position += length + 8;
+		}
+
+		// clear what a crash left of a record being written
+		mEnd = position;
+		if (mEnd + 4 <= mSize && mBuffer.getInt(mEnd) != 0) {
+			for (int i = mEnd; i < mSize; i++) {
+				mBuffer.put(i, (byte) 0);
+			}
+			mDirty.set(true);
+		}
+	}
+
+	private synchronized void finish(long id, byte result) {
+		if (mPending.remove(id) == null) {
+			return;
+		}
+
+		ByteBuffer record = ByteBuffer.allocate(10);
+		record.put(OUTCOME).putLong(id).put(result);
+		append(record.array());
+	}
+
+	private static byte[] encode(Intent intent) {
+		byte[] team = intent.mTeamName.getBytes(StandardCharsets.UTF_8);
+		byte[] data = intent.mFlightData.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer record = ByteBuffer.allocate(1 + 8 + 8 + 2 + team.length + 4 + data.length);
+		record.put(INTENT).putLong(intent.mId).putLong(intent.mTime);
+		record.putShort((short) team.length).put(team);
+		record.putInt(data.length).put(data);
+		return record.array();
+	}
+
+	private static String string(ByteBuffer record, int length) {
+		byte[] bytes = new byte[length];
+		record.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * write a record, replacing the segment first if it is full
+	 */
+	private boolean append(byte[] record) {
+		if (!fits(record)) {
+			try {
+				compact();
+			} catch (IOException e) {
+				e.printStackTrace();
+				return false;
+			}
+			if (!fits(record)) {
+				return false;
+			}
+		}
+		write(record);
+		return true;
+	}
+
+	private boolean fits(byte[] record) {
+		return mEnd + record.length + 8 <= mSize;
+	}
+
+	private void write(byte[] record) {
+		// the length is written last, a record without it is not read
+		CRC32 crc = new CRC32();
+		crc.update(record);
+		MappedByteBuffer buffer = mBuffer;
+		buffer.position(mEnd + 4);
+		buffer.put(record);
+		buffer.putInt((int) crc.getValue());
+		buffer.putInt(mEnd, record.length);
+		mEnd += record.length + 8;
+		mDirty.set(true);
+	}
+
+	/**
+	 * replace the segment with one holding the pending intents only
+	 */
+	private void compact() throws IOException {
+		MappedByteBuffer old = mBuffer;
+		int oldEnd = mEnd;
+		Path temp = Files.createTempFile(mFile.toAbsolutePath().getParent(), mFile.getFileName().toString(),
+				".tmp");
+		try {
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				mBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, mSize);
+			}
+			mBuffer.putInt(0, MAGIC).putShort(4, VERSION);
+			mEnd = HEADER;
+			for (Intent intent : mPending.values()) {
+				byte[] record = encode(intent);
+				if (!fits(record)) {
+					throw new IOException("pending intents do not fit in " + mSize + " bytes");
+				}
+				write(record);
+			}
+
+			mBuffer.force();
+			Files.move(temp, mFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			mBuffer = old;
+			mEnd = oldEnd;
+			throw e;
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+}
@@ -0,0 +1,215 @@
+package com.altimetrik.AgentFlightBookingApplication.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.altimetrik.AgentFlightBookingApplication.model.reservation.Reservation;
+import com.altimetrik.AgentFlightBookingApplication.utils.WorkerPools;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Books the reservations of many agents through one writer thread. Agents
+ * submit reservations to a bounded queue and get a future of the result; the
+ * writer takes everything waiting, up to the batch size, and books it with
+ * ServerInterface.book, so a batch costs one lock, one merged purchase and
+ * one unlock instead of a lock cycle per reservation. Agents no longer
+ * compete for the server lock, they wait in the queue instead.
+ *
+ * submit blocks while the queue is full.
+ */
+public final class BookingQueue implements AutoCloseable {
+	private final ServerInterface mServer;
+	private final String mTeamName;
+	private final int mMaxBatch;
+	private final BlockingQueue<Booking> mQueue;
+	private final Thread mWriter;
+	private volatile boolean mClosed;
+	private volatile boolean mStopped; // the writer has finished
+
+	private final AtomicLong mBatches = new AtomicLong();
+	private final AtomicLong mBooked = new AtomicLong();
+	private final AtomicLong mFailed = new AtomicLong();
+
+	/**
+	 * reservation waiting to be booked and the future of its result
+	 */
+	private static final class Booking {
+		final Reservation mReservation;
+		final CompletableFuture<Boolean> mResult = new CompletableFuture<Boolean>();
+
+		Booking(Reservation reservation) {
+			mReservation = reservation;
+		}
+	}
+
+	/**
+	 * Create a queue sized by the system properties booking.queue.capacity and
+	 * booking.batch.size
+	 *
+	 * @param teamName
+	 *            is the name of the team booking
+	 */
+	public BookingQueue(String teamName) {
+		this(ServerInterface.INSTANCE, teamName, Integer.getInteger("booking.queue.capacity", 1024),
+				Integer.getInteger("booking.batch.size", 32));
+	}
+
+	/**
+	 * Initializing constructor.
+	 *
+	 * @param server
+	 *            the server to book on
+	 * @param teamName
+	 *            is the name of the team booking
+	 * @param capacity
+	 *            number of reservations waiting at most
+	 * @param maxBatch
+	 *            number of reservations booked in one lock cycle at most
+	 */
+	public BookingQueue(ServerInterface server, String teamName, int capacity, int maxBatch) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity " + capacity);
+		if (maxBatch <= 0)
+			throw new IllegalArgumentException("maxBatch " + maxBatch);
+
+		mServer = server;
+		mTeamName = teamName;
+		mMaxBatch = maxBatch;
+		mQueue = new ArrayBlockingQueue<Booking>(capacity);
+		mWriter = WorkerPools.daemonThreads("booking-writer").newThread(this::drain);
+		mWriter.start();
+	}
+
+	/**
+	 * Queue a reservation for booking, waiting while the queue is full
+	 *
+	 * @param reservation
+	 *            the reservation to book
+	 * @return completes with true if the server confirmed the reservation,
+	 *         false if it did not or the queue is closed
+	 */
+	public CompletableFuture<Boolean> submit(Reservation reservation) {
+		Booking booking = new Booking(reservation);
+		if (mClosed) {
+			booking.mResult.complete(false);
+			return booking.mResult;
+		}
+
+		try {
+			mQueue.put(booking);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			booking.mResult.complete(false);
+			return booking.mResult;
+		}
+
+		// closed while waiting for room, the writer may be gone
+		if (mStopped && mQueue.remove(booking)) {
+			booking.mResult.complete(false);
+		}
+		return booking.mResult;
+	}
+
+	/**
+	 * @return number of reservations waiting
+	 */
+	public int pending() {
+		return mQueue.size();
+	}
+
+	/**
+	 * @return number of batches booked
+	 */
+	public long batches() {
+		return mBatches.get();
+	}
+
+	/**
+	 * @return number of reservations the server confirmed
+	 */
+	public long booked() {
+		return mBooked.get();
+	}
+
+	/**
+	 * @return number of reservations the server did not confirm
+	 */
+	public long failed() {
+		return mFailed.get();
+	}
+
+	/**
+	 * Stop taking reservations, book the ones waiting and wait for the writer
+	 * to finish
+	 */
+	public void close() {
+		mClosed = true;
+		try {
+			mWriter.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * the writer thread: book the waiting reservations batch by batch until
+	 * the queue is closed and empty
+	 */
+	private void drain() {
+		List<Booking> batch = new ArrayList<Booking>(mMaxBatch);
+		while (true) {
+			Booking first;
+			try {
+				first = mQueue.poll(100, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				first = null;
+			}
+			if (first == null) {
+				if (mClosed && mQueue.isEmpty()) {
+					mStopped = true;
+					// refuse what was queued while stopping, see submit
+					for (Booking late = mQueue.poll(); late != null; late = mQueue.poll()) {
+						late.mResult.complete(false);
+					}
+					return;
+				}
+				continue;
+			}
+
+			batch.add(first);
+			mQueue.drainTo(batch, mMaxBatch - 1);
+			book(batch);
+			batch.clear();
+		}
+	}
+
+	private void book(List<Booking> batch) {
+		List<Reservation> reservations = new ArrayList<Reservation>(batch.size());
+		for (Booking booking : batch) {
+			reservations.add(booking.mReservation);
+		}
+
+		boolean[] booked;
+		try {
+			booked = mServer.book(mTeamName, reservations);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			booked = new boolean[batch.size()];
+		}
+
+		mBatches.incrementAndGet();
+		for (int i = 0; i < batch.size(); i++) {
+			(booked[i] ? mBooked : mFailed).incrementAndGet();
+			batch.get(i).mResult.complete(booked[i]);
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package com.altimetrik.AgentFlightBookingApplication.dao;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.altimetrik.AgentFlightBookingApplication.model.reservation.Reservation;
+import com.altimetrik.AgentFlightBookingApplication.utils.WorkerPools;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Lease on the server lock of a team. The lock is taken once when the session
+ * is opened by ServerInterface.openSession, then any number of reservations
+ * are booked while the lease lasts. The lock is released by close, when a
+ * booking fails and when the lease runs out, whichever comes first; the
+ * lease should be shorter than the time the server drops a lock after.
+ *
+ * Bookings of one session are sent one after the other. Only one session of a
+ * team is open at a time in this process, the next one opens once it closes.
+ */
+public final class BookingSession implements AutoCloseable {
+	private final ServerInterface mServer;
+	private final String mTeamName;
+	private final long mExpires; // System.nanoTime() the lease ends at
+	private final Semaphore mTurn; // released for the next session of the team
+
+	private boolean mHeld = true;
+	private int mBooked;
+	private ScheduledFuture<?> mExpiry;
+
+	/**
+	 * Start a lease on a lock already taken
+	 *
+	 * @param server
+	 *            the server holding the lock
+	 * @param teamName
+	 *            is the name of the team holding the lock
+	 * @param leaseMillis
+	 *            time the lock is held at most
+	 * @param turn
+	 *            the turn of the team taken, released on close
+	 */
+	BookingSession(ServerInterface server, String teamName, long leaseMillis, Semaphore turn) {
+		mServer = server;
+		mTeamName = teamName;
+		mTurn = turn;
+		mExpires = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(leaseMillis);
+		mExpiry = WorkerPools.timer().schedule(this::close, leaseMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Buy the tickets of a reservation. A failed purchase ends the session.
+	 *
+	 * @param reservation
+	 *            identifies the flights reserved by customer
+	 * @return BOUGHT if the tickets were bought, REFUSED if the server refused
+	 *         them or the lease has ended, UNKNOWN if the server did not answer
+	 */
+	public synchronized PurchaseOutcome book(Reservation reservation) {
+		if (!isHeld()) {
+			return PurchaseOutcome.REFUSED;
+		}
+
+		PurchaseOutcome outcome = mServer.postFlights(mTeamName, Collections.singletonList(reservation));
+		if (!outcome.isBought()) {
+			close();
+			return outcome;
+		}
+		mBooked++;
+		return outcome;
+	}
+
+	/**
+	 * Buy the tickets of several reservations in one purchase, of all or of
+	 * none. A refused purchase leaves the session open, so the reservations
+	 * can be booked one by one; a purchase the server did not answer ends the
+	 * session, as it may have gone through.
+	 *
+	 * @param reservations
+	 *            identifies the flights reserved by customers
+	 * @return BOUGHT if the tickets of all reservations were bought, REFUSED
+	 *         if none were or the lease has ended, UNKNOWN if the server did
+	 *         not answer
+	 */
+	public synchronized PurchaseOutcome bookAll(List<Reservation> reservations) {
+		if (!isHeld()) {
+			return PurchaseOutcome.REFUSED;
+		}
+
+		PurchaseOutcome outcome = mServer.postFlights(mTeamName, reservations);
+		if (outcome == PurchaseOutcome.UNKNOWN) {
+			close();
+		} else if (outcome.isBought()) {
+			mBooked += reservations.size();
+		}
+		return outcome;
+	}
+
+	/**
+	 * @return true while the lock is held and the lease has not run out
+	 */
+	public synchronized boolean isHeld() {
+		return mHeld && System.nanoTime() - mExpires < 0;
+	}
+
+	/**
+	 * @return number of reservations booked in this session
+	 */
+	public synchronized int booked() {
+		return mBooked;
+	}
+
+	/**
+	 * @return name of the team holding the lock
+	 */
+	public String teamName() {
+		return mTeamName;
+	}
+
+	/**
+	 * Release the lock, if the session still holds it
+	 */
+	public synchronized void close() {
+		if (!mHeld) {
+			return;
+		}
+
+		mHeld = false;
+		if (mExpiry != null) {
+			mExpiry.cancel(false);
+		}
+		try {
+			mServer.unlock(mTeamName);
+		} finally {
+			mTurn.release();
+		}
+	}
+}
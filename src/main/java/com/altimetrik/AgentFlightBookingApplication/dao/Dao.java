@@ -1,11 +1,19 @@
 package com.altimetrik.AgentFlightBookingApplication.dao;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
+import java.time.DateTimeException;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.w3c.dom.CharacterData;
 import org.w3c.dom.Document;
@@ -18,7 +26,6 @@ import org.xml.sax.SAXException;
 import com.altimetrik.AgentFlightBookingApplication.model.airplane.Airplane;
 import com.altimetrik.AgentFlightBookingApplication.model.airplane.Airplanes;
 import com.altimetrik.AgentFlightBookingApplication.model.airport.Airport;
-import com.altimetrik.AgentFlightBookingApplication.model.airport.Airports;
 import com.altimetrik.AgentFlightBookingApplication.model.flight.Flight;
 import com.altimetrik.AgentFlightBookingApplication.model.flight.Flights;
 
@@ -28,6 +35,38 @@ import com.altimetrik.AgentFlightBookingApplication.model.flight.Flights;
  *
  */
 public class Dao {
+	/**
+	 * Flights are parsed with the streaming parser unless the system property
+	 * dao.flight.parser is set to "dom"
+	 */
+	private static volatile boolean mStreamingParser = !"dom".equalsIgnoreCase(System.getProperty("dao.flight.parser"));
+
+	private static final ThreadLocal<XMLInputFactory> mInputFactory = ThreadLocal.withInitial(() -> {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+		return factory;
+	});
+
+	/**
+	 * Choose how flight lists are parsed
+	 * 
+	 * @param streaming
+	 *            true to parse flights with the StAX pull parser, false to
+	 *            build a DOM tree from the whole response
+	 */
+	public static void setStreamingParser(boolean streaming) {
+		mStreamingParser = streaming;
+	}
+
+	/**
+	 * @return true if flight lists are parsed with the StAX pull parser
+	 */
+	public static boolean isStreamingParser() {
+		return mStreamingParser;
+	}
+
 	/**
 	 * Builds collection of airplane from airplanes described in XML
 	 * 
@@ -143,7 +182,14 @@ public class Dao {
 
 		for (int i = 0; i < nodesFlights.getLength(); i++) {
 			Element elementFlight = (Element) nodesFlights.item(i);
-			Flight flight = buildFlight(elementFlight);
+			Flight flight;
+			try {
+				flight = buildFlight(elementFlight);
+			} catch (DateTimeException | NumberFormatException e) {
+				// a malformed flight is skipped, not the rest of the list
+				e.printStackTrace();
+				continue;
+			}
 
 			if (flight.isValid()) {
 				flights.add(flight);
@@ -153,6 +199,140 @@ public class Dao {
 		return flights;
 	}
 
+	/**
+	 * Builds collection of flights from flights described in an XML stream
+	 * 
+	 * Reads the stream with a StAX pull parser and builds each Flight as its
+	 * element closes, so neither the response String nor a DOM tree of it is
+	 * ever built. The stream is not closed.
+	 * 
+	 * @param xmlFlights
+	 *            stream of XML containing set of flights
+	 * @return [possibly empty] collection of Flights in the xml stream
+	 * 
+	 */
+	public static Flights addAllFlights(InputStream xmlFlights) {
+		Flights flights = new Flights();
+		XMLStreamReader reader = null;
+
+		try {
+			reader = mInputFactory.get().createXMLStreamReader(xmlFlights);
+
+			Flight flight = null;
+			boolean departure = false;
+			while (reader.hasNext()) {
+				if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+					if (reader.getEventType() == XMLStreamConstants.END_ELEMENT && flight != null
+							&& reader.getLocalName().equals("Flight")) {
+						if (flight.isValid()) {
+							flights.add(flight);
+						}
+						flight = null;
+					}
+					continue;
+				}
+
+				String element = reader.getLocalName();
+				try {
+					if (element.equals("Flight")) {
+						// The flight element has attributes including number
+						flight = new Flight();
+						flight.setNumber(Integer.parseInt(reader.getAttributeValue(null, "Number"), 10));
+						flight.setAirplane(reader.getAttributeValue(null, "Airplane"));
+						flight.setFlightTime(Integer.parseInt(reader.getAttributeValue(null, "FlightTime"), 10));
+					} else if (flight == null) {
+						continue;
+					} else if (element.equals("Departure")) {
+						departure = true;
+					} else if (element.equals("Arrival")) {
+						departure = false;
+					} else if (element.equals("Code")) {
+						if (departure) {
+							flight.setDepartureAirport(reader.getElementText());
+						} else {
+							flight.setArrivalAirport(reader.getElementText());
+						}
+					} else if (element.equals("Time")) {
+						if (departure) {
+							flight.setDepartureTime(reader.getElementText());
+						} else {
+							flight.setArrivalTime(reader.getElementText());
+						}
+					} else if (element.equals("FirstClass")) {
+						// price is an attribute, the booked seats are the text
+						flight.setFirstClassPrice(reader.getAttributeValue(null, "Price"));
+						flight.setFirstClassBooked(Integer.parseInt(reader.getElementText().trim()));
+					} else if (element.equals("Coach")) {
+						flight.setCoachPrice(reader.getAttributeValue(null, "Price"));
+						flight.setCoachBooked(Integer.parseInt(reader.getElementText().trim()));
+					}
+				} catch (DateTimeException | NumberFormatException e) {
+					// a malformed flight is skipped, not the rest of the list
+					e.printStackTrace();
+					flight = null;
+				}
+			}
+		} catch (XMLStreamException e) {
+			e.printStackTrace();
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (XMLStreamException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+
+		return flights;
+	}
+
+	/**
+	 * Reads the flights bought by a purchase
+	 * 
+	 * Parses the flight data sent to buyTickets, as written by
+	 * Reservation.toXML:
+	 * &lt;Flights&gt;&lt;Flight number="" seating=""/&gt;&lt;/Flights&gt;
+	 * 
+	 * @param flightData
+	 *            XML string of the flights and seating bought
+	 * @return number and seating of every flight, null if the data is not
+	 *         valid
+	 */
+	public static List<String[]> parseFlightData(String flightData) {
+		if (flightData == null) {
+			return null;
+		}
+
+		List<String[]> legs = new ArrayList<String[]>();
+		XMLStreamReader reader = null;
+		try {
+			reader = mInputFactory.get().createXMLStreamReader(new StringReader(flightData));
+			while (reader.hasNext()) {
+				if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("Flight")) {
+					String number = reader.getAttributeValue(null, "number");
+					String seating = reader.getAttributeValue(null, "seating");
+					if (number == null || !number.matches("\\d{1,9}")
+							|| !("Coach".equals(seating) || "FirstClass".equals(seating))) {
+						return null;
+					}
+					legs.add(new String[] { number, seating });
+				}
+			}
+		} catch (XMLStreamException e) {
+			return null;
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (XMLStreamException e) {
+					// nothing to release
+				}
+			}
+		}
+		return legs;
+	}
+
 	/**
 	 * Creates a flight object from a DOM node
 	 * 
@@ -238,16 +418,19 @@ public class Dao {
 	 * 
 	 * Method iterates over the set of Airport nodes in the XML string and
 	 * builds an Airport object from the XML node string and add the Airport
-	 * object instance to the Airports collection.
+	 * object instance to the returned list. The list is published to the
+	 * Airports registry once the time zones are known.
 	 * 
 	 * @param xmlAirports
 	 *            XML string containing set of airports
+	 * @return [possibly empty] list of Airports in the xml string
 	 * @throws NullPointerException
 	 *             included to keep signature consistent with other addAll
 	 *             methods
 	 * 
 	 */
-	public static void addAllAirports(String xmlAirports) throws NullPointerException {
+	public static List<Airport> addAllAirports(String xmlAirports) throws NullPointerException {
+		List<Airport> airports = new ArrayList<Airport>();
 
 		// Load the XML string into a DOM tree for ease of processing
 		// then iterate over all nodes adding each airport to our collection
@@ -259,9 +442,11 @@ public class Dao {
 			Airport airport = buildAirport(elementAirport);
 
 			if (airport.isValid()) {
-				Airports.getInstance().add(airport);
+				airports.add(airport);
 			}
 		}
+
+		return airports;
 	}
 
 	/**
@@ -296,6 +481,11 @@ public class Dao {
 		 */
 		airport.name(name);
 		airport.code(code);
+
+		// servers other than the classroom server may send the time zone
+		if (elementAirport.hasAttribute("TimeZone")) {
+			airport.timeZone(elementAirport.getAttribute("TimeZone"));
+		}
 		return airport;
 	}
 
@@ -307,7 +497,7 @@ public class Dao {
 	 * @param xmlAirportTimeZone
 	 *            XML String containing set of objects
 	 * @param airport
-	 *            an instance of Airports
+	 *            the airport to update
 	 */
 	public static void addAirportTimeZone(String xmlAirportTimeZone, Airport airport) throws NullPointerException {
 		// Load the XML string into a DOM tree for ease of processing
@@ -2,6 +2,8 @@ package com.altimetrik.AgentFlightBookingApplication.dao;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -15,7 +17,6 @@ import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 import com.altimetrik.AgentFlightBookingApplication.model.airport.Airport;
-import com.altimetrik.AgentFlightBookingApplication.model.airport.Airports;
 
 /**
  * 
@@ -32,16 +33,18 @@ public class DaoAirport {
 	 * 
 	 * Method iterates over the set of Airport nodes in the XML string and
 	 * builds an Airport object from the XML node string and add the Airport
-	 * object instance to the Airports collection.
+	 * object instance to the returned list.
 	 * 
 	 * @param xmlAirports
 	 *            XML string containing set of airports
+	 * @return [possibly empty] list of Airports in the xml string
 	 * @throws NullPointerException
 	 *             included to keep signature consistent with other addAll
 	 *             methods
 	 * 
 	 */
-	public static void addAll(String xmlAirports) throws NullPointerException {
+	public static List<Airport> addAll(String xmlAirports) throws NullPointerException {
+		List<Airport> airports = new ArrayList<Airport>();
 
 		// Load the XML string into a DOM tree for ease of processing
 		// then iterate over all nodes adding each airport to our collection
@@ -53,9 +56,11 @@ public class DaoAirport {
 			Airport airport = buildAirport(elementAirport);
 
 			if (airport.isValid()) {
-				Airports.getInstance().add(airport);
+				airports.add(airport);
 			}
 		}
+
+		return airports;
 	}
 
 	/**
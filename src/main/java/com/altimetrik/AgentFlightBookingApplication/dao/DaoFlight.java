@@ -1,6 +1,7 @@
 package com.altimetrik.AgentFlightBookingApplication.dao;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -61,6 +62,19 @@ public class DaoFlight {
 		return flights;
 	}
 
+	/**
+	 * Builds collection of flights from flights described in an XML stream
+	 * 
+	 * Delegates to the StAX parser of Dao so no DOM tree is built.
+	 * 
+	 * @param xmlFlights stream of XML containing set of flights
+	 * @return [possibly empty] collection of Flights in the xml stream
+	 * 
+	 */
+	public static Flights addAll (InputStream xmlFlights) {
+		return Dao.addAllFlights(xmlFlights);
+	}
+
 	/**
 	 * Creates a flight object from a DOM node
 	 * 
@@ -0,0 +1,368 @@
+package com.altimetrik.AgentFlightBookingApplication.dao;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.altimetrik.AgentFlightBookingApplication.model.flight.Flight;
+import com.altimetrik.AgentFlightBookingApplication.model.flight.Flights;
+import com.altimetrik.AgentFlightBookingApplication.model.reservation.Reservation;
+import com.altimetrik.AgentFlightBookingApplication.utils.ServerTime;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Process wide cache of the flights departing an airport on a date, shared by
+ * all searches. Entries expire after a time to live and the least recently
+ * used entry is evicted once the cache is full. Cached Flights are shared and
+ * must not be modified by callers.
+ *
+ * Every invalidation of an airport counts up its generation. A download
+ * started before the invalidation is not stored, so flights downloaded before
+ * a booking are never served after it.
+ *
+ * The size and time to live are set by the system properties
+ * flight.cache.size and flight.cache.ttl.seconds.
+ */
+public final class FlightCache {
+	private static final FlightCache mInstance = new FlightCache(Integer.getInteger("flight.cache.size", 512),
+			Long.getLong("flight.cache.ttl.seconds", 300), TimeUnit.SECONDS);
+
+	private final int mMaxEntries;
+	private final long mTtlNanos;
+	private final LinkedHashMap<String, CachedFlights> mEntries;
+	private volatile boolean mInvalidateOnBooking = true;
+
+	// invalidations by airport and of the whole cache, guarded by mEntries
+	private final Map<String, Long> mGenerations = new HashMap<String, Long>();
+	private long mGeneration;
+
+	private final AtomicLong mHits = new AtomicLong();
+	private final AtomicLong mMisses = new AtomicLong();
+	private final AtomicLong mEvictions = new AtomicLong();
+	private final AtomicLong mExpirations = new AtomicLong();
+	private final AtomicLong mInvalidations = new AtomicLong();
+
+	/**
+	 * get the shared flight cache
+	 *
+	 * @return the process wide flight cache
+	 */
+	public static FlightCache getInstance() {
+		return mInstance;
+	}
+
+	/**
+	 * Initializing constructor.
+	 *
+	 * @param maxEntries
+	 *            maximum number of airport and date entries kept
+	 * @param ttl
+	 *            time an entry stays valid after it was stored
+	 * @param unit
+	 *            unit of ttl
+	 */
+	public FlightCache(int maxEntries, long ttl, TimeUnit unit) {
+		if (maxEntries <= 0)
+			throw new IllegalArgumentException(String.valueOf(maxEntries));
+		if (ttl <= 0)
+			throw new IllegalArgumentException(String.valueOf(ttl));
+
+		mMaxEntries = maxEntries;
+		mTtlNanos = unit.toNanos(ttl);
+		mEntries = new LinkedHashMap<String, CachedFlights>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedFlights> eldest) {
+				if (size() > mMaxEntries) {
+					mEvictions.incrementAndGet();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Return the cached flights departing an airport on a date
+	 *
+	 * @param airport
+	 *            3 letter code of the departure airport
+	 * @param date
+	 *            departure date in yyyy_mm_dd format
+	 * @return the cached flights, or null if not cached or expired
+	 */
+	public Flights get(String airport, String date) {
+		String key = key(airport, date);
+		synchronized (mEntries) {
+			CachedFlights entry = mEntries.get(key);
+			if (entry != null && System.nanoTime() - entry.storedAt > mTtlNanos) {
+				mEntries.remove(key);
+				mExpirations.incrementAndGet();
+				entry = null;
+			}
+
+			if (entry == null) {
+				mMisses.incrementAndGet();
+				return null;
+			}
+			mHits.incrementAndGet();
+			return entry.flights;
+		}
+	}
+
+	/**
+	 * Store the flights departing an airport on a date
+	 *
+	 * @param airport
+	 *            3 letter code of the departure airport
+	 * @param date
+	 *            departure date in yyyy_mm_dd format
+	 * @param flights
+	 *            the flights to cache, not modified afterwards
+	 */
+	public void put(String airport, String date, Flights flights) {
+		CachedFlights entry = new CachedFlights(flights, System.nanoTime());
+		synchronized (mEntries) {
+			mEntries.put(key(airport, date), entry);
+		}
+	}
+
+	/**
+	 * Store the flights departing an airport on a date, unless the airport
+	 * was invalidated since the download started
+	 *
+	 * @param airport
+	 *            3 letter code of the departure airport
+	 * @param date
+	 *            departure date in yyyy_mm_dd format
+	 * @param flights
+	 *            the flights to cache, not modified afterwards
+	 * @param generation
+	 *            the generation of the airport read before the download
+	 * @return true if the flights were stored
+	 */
+	public boolean put(String airport, String date, Flights flights, long generation) {
+		CachedFlights entry = new CachedFlights(flights, System.nanoTime());
+		synchronized (mEntries) {
+			if (generation(airport) != generation) {
+				return false;
+			}
+			mEntries.put(key(airport, date), entry);
+			return true;
+		}
+	}
+
+	/**
+	 * Return the generation of an airport, read before downloading its
+	 * flights and handed to put
+	 *
+	 * @param airport
+	 *            3 letter code of the departure airport
+	 * @return number of times the airport was invalidated
+	 */
+	public long generation(String airport) {
+		synchronized (mEntries) {
+			return mGeneration + mGenerations.getOrDefault(airport, 0L);
+		}
+	}
+
+	/**
+	 * Drop every cached date of an airport
+	 *
+	 * @param airport
+	 *            3 letter code of the departure airport
+	 */
+	public void invalidate(String airport) {
+		String prefix = airport + "_";
+		synchronized (mEntries) {
+			mGenerations.merge(airport, 1L, Long::sum);
+			Iterator<String> keys = mEntries.keySet().iterator();
+			while (keys.hasNext()) {
+				if (keys.next().startsWith(prefix)) {
+					keys.remove();
+					mInvalidations.incrementAndGet();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Drop every cached entry
+	 */
+	public void invalidateAll() {
+		synchronized (mEntries) {
+			mGeneration++;
+			mInvalidations.addAndGet(mEntries.size());
+			mEntries.clear();
+		}
+	}
+
+	/**
+	 * Invalidation hook called after tickets were bought. Drops the airports
+	 * the reservation departs from so the booked seat counts are downloaded
+	 * again, unless disabled with setInvalidateOnBooking.
+	 *
+	 * @param reservation
+	 *            the reservation just bought
+	 */
+	public void onBooking(Reservation reservation) {
+		if (!mInvalidateOnBooking) {
+			return;
+		}
+		for (Flight flight : reservation.getLegs()) {
+			invalidate(flight.getDepartureAirport());
+		}
+	}
+
+	/**
+	 * Invalidation hook called after tickets were bought without a
+	 * Reservation, as when a purchase is replayed from the journal. Drops the
+	 * airports any of the flights departs from, like onBooking.
+	 *
+	 * @param numbers
+	 *            numbers of the flights just bought
+	 */
+	public void onBooking(Set<Integer> numbers) {
+		if (!mInvalidateOnBooking) {
+			return;
+		}
+
+		Set<String> airports = new HashSet<String>();
+		for (Flight flight : flights(numbers)) {
+			airports.add(flight.getDepartureAirport());
+		}
+		for (String airport : airports) {
+			invalidate(airport);
+		}
+	}
+
+	/**
+	 * Find the cached flights with any of the numbers
+	 *
+	 * @param numbers
+	 *            the flight numbers
+	 * @return the cached flights with one of the numbers, on any date
+	 */
+	public List<Flight> flights(Set<Integer> numbers) {
+		List<Flight> flights = new ArrayList<Flight>();
+		synchronized (mEntries) {
+			for (CachedFlights entry : mEntries.values()) {
+				for (Flight flight : entry.flights) {
+					if (numbers.contains(flight.getNumber())) {
+						flights.add(flight);
+					}
+				}
+			}
+		}
+		return flights;
+	}
+
+	/**
+	 * @param invalidate
+	 *            true to drop cached flights of an airport after booking
+	 *            tickets from it
+	 */
+	public void setInvalidateOnBooking(boolean invalidate) {
+		mInvalidateOnBooking = invalidate;
+	}
+
+	/**
+	 * @return number of entries currently cached
+	 */
+	public int size() {
+		synchronized (mEntries) {
+			return mEntries.size();
+		}
+	}
+
+	/**
+	 * @return number of lookups answered from the cache
+	 */
+	public long hits() {
+		return mHits.get();
+	}
+
+	/**
+	 * @return number of lookups that had to go to the server
+	 */
+	public long misses() {
+		return mMisses.get();
+	}
+
+	/**
+	 * @return number of entries evicted because the cache was full
+	 */
+	public long evictions() {
+		return mEvictions.get();
+	}
+
+	/**
+	 * @return number of entries dropped because their time to live passed
+	 */
+	public long expirations() {
+		return mExpirations.get();
+	}
+
+	/**
+	 * @return number of entries dropped by invalidation
+	 */
+	public long invalidations() {
+		return mInvalidations.get();
+	}
+
+	/**
+	 * @return share of lookups answered from the cache, 0 if none yet
+	 */
+	public double hitRate() {
+		long hits = mHits.get();
+		long total = hits + mMisses.get();
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	/**
+	 * print the cache statistics
+	 */
+	public String toString() {
+		StringBuffer sb = new StringBuffer();
+
+		sb.append("Flight cache: ").append(size()).append("/").append(mMaxEntries).append(" entries, ");
+		sb.append("hits: ").append(hits()).append(", ");
+		sb.append("misses: ").append(misses()).append(", ");
+		sb.append("hit rate: ").append(String.format("%.1f%%", hitRate() * 100)).append(", ");
+		sb.append("evictions: ").append(evictions()).append(", ");
+		sb.append("expirations: ").append(expirations()).append(", ");
+		sb.append("invalidations: ").append(invalidations());
+
+		return sb.toString();
+	}
+
+	/**
+	 * Cache key of an airport and date. Dates are normalized so 2017_12_5 and
+	 * 2017_12_05 share an entry.
+	 */
+	static String key(String airport, String date) {
+		return airport + "_" + ServerTime.toEpochDay(date);
+	}
+
+	private static final class CachedFlights {
+		private final Flights flights;
+		private final long storedAt;
+
+		CachedFlights(Flights flights, long storedAt) {
+			this.flights = flights;
+			this.storedAt = storedAt;
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package com.altimetrik.AgentFlightBookingApplication.dao;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Transport on a shared java.net.http.HttpClient. Connections are kept alive
+ * and reused between requests, at most maxConnections requests are open at
+ * once so the pool of connections stays bounded. Response bodies are streamed
+ * to the caller instead of being read into a String first.
+ *
+ * The defaults are set by the system properties server.http.max.connections,
+ * server.http.connect.timeout.ms and server.http.read.timeout.ms.
+ */
+public final class HttpClientTransport implements Transport {
+	private static final String FORM = "application/x-www-form-urlencoded";
+
+	private final HttpClient mClient;
+	private final Semaphore mConnections;
+	private final Duration mReadTimeout;
+
+	/**
+	 * Create a transport configured by system properties
+	 */
+	public HttpClientTransport() {
+		this(Integer.getInteger("server.http.max.connections", 16),
+				Duration.ofMillis(Long.getLong("server.http.connect.timeout.ms", 5000)),
+				Duration.ofMillis(Long.getLong("server.http.read.timeout.ms", 30000)));
+	}
+
+	/**
+	 * Initializing constructor.
+	 *
+	 * @param maxConnections
+	 *            maximum number of requests open at once
+	 * @param connectTimeout
+	 *            time allowed to open a connection
+	 * @param readTimeout
+	 *            time allowed until the response headers arrive
+	 */
+	public HttpClientTransport(int maxConnections, Duration connectTimeout, Duration readTimeout) {
+		if (maxConnections <= 0)
+			throw new IllegalArgumentException(String.valueOf(maxConnections));
+
+		mConnections = new Semaphore(maxConnections);
+		mReadTimeout = readTimeout;
+		mClient = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_1_1)
+				.connectTimeout(connectTimeout)
+				.build();
+	}
+
+	public Response get(String url, String teamName) throws IOException {
+		return send(request(url, teamName).GET().build());
+	}
+
+	public Response post(String url, String teamName, String params) throws IOException {
+		HttpRequest request = request(url, teamName)
+				.header("Content-Type", FORM)
+				.POST(HttpRequest.BodyPublishers.ofString(params))
+				.build();
+		return send(request);
+	}
+
+	private HttpRequest.Builder request(String url, String teamName) {
+		HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url)).timeout(mReadTimeout);
+		if (teamName != null && !teamName.isEmpty()) {
+			builder.header("User-Agent", teamName);
+		}
+		return builder;
+	}
+
+	/**
+	 * Send a request once a connection is free. The connection is given back
+	 * when the response is closed.
+	 */
+	private Response send(HttpRequest request) throws IOException {
+		try {
+			mConnections.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted waiting for a connection");
+		}
+
+		try {
+			HttpResponse<InputStream> response = mClient.send(request, HttpResponse.BodyHandlers.ofInputStream());
+			return new Response(response.statusCode(), response.body(), mConnections::release);
+		} catch (InterruptedException e) {
+			mConnections.release();
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted waiting for " + request.uri());
+		} catch (IOException | RuntimeException e) {
+			mConnections.release();
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package com.altimetrik.AgentFlightBookingApplication.dao;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * What came of a ticket purchase. Only a purchase the server refused, or one
+ * never sent, can be sent again; one whose answer was lost may have gone
+ * through and would buy the seats twice.
+ */
+public enum PurchaseOutcome {
+	/**
+	 * the server confirmed the purchase
+	 */
+	BOUGHT,
+	/**
+	 * the server refused the purchase or it was not sent, no seat was bought
+	 */
+	REFUSED,
+	/**
+	 * the server did not answer, the seats may or may not have been bought
+	 */
+	UNKNOWN;
+
+	/**
+	 * @return true if the server confirmed the purchase
+	 */
+	public boolean isBought() {
+		return this == BOUGHT;
+	}
+}
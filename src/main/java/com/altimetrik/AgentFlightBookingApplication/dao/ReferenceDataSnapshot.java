@@ -0,0 +1,224 @@
+package com.altimetrik.AgentFlightBookingApplication.dao;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import com.altimetrik.AgentFlightBookingApplication.model.airplane.Airplane;
+import com.altimetrik.AgentFlightBookingApplication.model.airplane.AirplaneCatalog;
+import com.altimetrik.AgentFlightBookingApplication.model.airplane.Airplanes;
+import com.altimetrik.AgentFlightBookingApplication.model.airport.Airport;
+import com.altimetrik.AgentFlightBookingApplication.model.airport.Airports;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Local copy of the reference data that rarely changes: the airports with
+ * their time zones and the seat capacity of every airplane model. Loading the
+ * snapshot at startup replaces the downloads the first prompt would otherwise
+ * wait for; the server copy is refreshed in the background.
+ *
+ * The file is a compact binary format: a magic number and format version, the
+ * time it was saved, the airports, the airplanes and a CRC32 of everything
+ * before it. A file of another version or with a wrong checksum is ignored.
+ * The file is written to a temporary file first and moved in place, so a
+ * crash never leaves a half written snapshot.
+ *
+ * The location is set by the system property reference.snapshot.
+ */
+public final class ReferenceDataSnapshot {
+	private static final int MAGIC = 0x41464253; // "AFBS"
+	private static final int VERSION = 1;
+
+	private ReferenceDataSnapshot() {
+	}
+
+	/**
+	 * get the snapshot location
+	 *
+	 * @return the file set by reference.snapshot, by default
+	 *         .agentflightbooking/reference.snapshot in the user's home
+	 */
+	public static Path defaultPath() {
+		String path = System.getProperty("reference.snapshot");
+		if (path != null) {
+			return Paths.get(path);
+		}
+		return Paths.get(System.getProperty("user.home"), ".agentflightbooking", "reference.snapshot");
+	}
+
+	/**
+	 * Publish the airports and load the airplane catalog from a snapshot
+	 *
+	 * @param file
+	 *            the snapshot file
+	 * @return true if the snapshot was loaded, false if it is missing, of
+	 *         another version or damaged
+	 */
+	public static boolean load(Path file) {
+		List<Airport> airports = new ArrayList<Airport>();
+		Airplanes airplanes = new Airplanes();
+
+		CRC32 crc = new CRC32();
+		try (InputStream stream = new BufferedInputStream(Files.newInputStream(file))) {
+			DataInputStream in = new DataInputStream(new CheckedInputStream(stream, crc));
+			if (in.readInt() != MAGIC || in.readUnsignedShort() != VERSION) {
+				return false;
+			}
+			in.readLong(); // time saved
+
+			int airportCount = in.readInt();
+			for (int i = 0; i < airportCount; i++) {
+				Airport airport = new Airport();
+				airport.name(in.readUTF());
+				airport.code(in.readUTF());
+				if (in.readBoolean()) {
+					airport.timeZone(in.readUTF());
+				}
+				airports.add(airport);
+			}
+
+			int airplaneCount = in.readInt();
+			for (int i = 0; i < airplaneCount; i++) {
+				Airplane airplane = new Airplane();
+				airplane.setModel(in.readUTF());
+				airplane.setFirstClassSeats(in.readInt());
+				airplane.setCoachSeats(in.readInt());
+				airplanes.add(airplane);
+			}
+
+			long computed = crc.getValue();
+			if (new DataInputStream(stream).readLong() != computed) {
+				return false;
+			}
+		} catch (NoSuchFileException e) {
+			return false;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		} catch (IllegalArgumentException e) {
+			// damaged before the checksum could tell
+			return false;
+		}
+
+		if (airports.isEmpty()) {
+			return false;
+		}
+		Airports.publish(airports);
+		AirplaneCatalog.getInstance().load(airplanes);
+		return true;
+	}
+
+	/**
+	 * Save the current airports and airplane catalog
+	 *
+	 * @param file
+	 *            the snapshot file, its directory is created if needed
+	 * @return true if the snapshot was written, false if there is nothing to
+	 *         save or writing failed
+	 */
+	public static boolean save(Path file) {
+		List<Airport> airports = new ArrayList<Airport>(Airports.getInstance().size());
+		for (Airport airport : Airports.getInstance()) {
+			airports.add(airport);
+		}
+
+		List<Airplane> airplanes = new ArrayList<Airplane>();
+		for (Map.Entry<String, AirplaneCatalog.SeatCapacity> model : AirplaneCatalog.getInstance().models()
+				.entrySet()) {
+			Airplane airplane = new Airplane();
+			airplane.setModel(model.getKey());
+			airplane.setFirstClassSeats(model.getValue().getFirstClassSeats());
+			airplane.setCoachSeats(model.getValue().getCoachSeats());
+			airplanes.add(airplane);
+		}
+
+		return save(file, airports, airplanes);
+	}
+
+	/**
+	 * Save airports and airplanes that are not loaded, like a generated
+	 * schedule
+	 *
+	 * @param file
+	 *            the snapshot file, its directory is created if needed
+	 * @param airports
+	 *            the airports with their time zones
+	 * @param airplanes
+	 *            the airplane models
+	 * @return true if the snapshot was written, false if there is nothing to
+	 *         save or writing failed
+	 */
+	public static boolean save(Path file, Collection<Airport> airports, Collection<Airplane> airplanes) {
+		if (airports.isEmpty() || airplanes.isEmpty()) {
+			return false;
+		}
+
+		Path temp = null;
+		try {
+			Path directory = file.toAbsolutePath().getParent();
+			Files.createDirectories(directory);
+			temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+
+			CRC32 crc = new CRC32();
+			try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(temp))) {
+				DataOutputStream out = new DataOutputStream(new CheckedOutputStream(stream, crc));
+				out.writeInt(MAGIC);
+				out.writeShort(VERSION);
+				out.writeLong(System.currentTimeMillis());
+
+				out.writeInt(airports.size());
+				for (Airport airport : airports) {
+					out.writeUTF(airport.name());
+					out.writeUTF(airport.code());
+					out.writeBoolean(airport.timezone() != null);
+					if (airport.timezone() != null) {
+						out.writeUTF(airport.timezone());
+					}
+				}
+
+				out.writeInt(airplanes.size());
+				for (Airplane airplane : airplanes) {
+					out.writeUTF(airplane.getModel());
+					out.writeInt(airplane.getFirstClassSeats());
+					out.writeInt(airplane.getCoachSeats());
+				}
+				out.flush();
+
+				new DataOutputStream(stream).writeLong(crc.getValue());
+			}
+
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			if (temp != null) {
+				try {
+					Files.deleteIfExists(temp);
+				} catch (IOException ignored) {
+					// nothing left to clean up
+				}
+			}
+			return false;
+		}
+	}
+}
@@ -1,20 +1,35 @@
 package com.altimetrik.AgentFlightBookingApplication.dao;
 
-import java.io.BufferedReader;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import com.altimetrik.AgentFlightBookingApplication.model.airplane.Airplanes;
 import com.altimetrik.AgentFlightBookingApplication.model.airport.Airport;
 import com.altimetrik.AgentFlightBookingApplication.model.airport.Airports;
+import com.altimetrik.AgentFlightBookingApplication.model.flight.Flight;
 import com.altimetrik.AgentFlightBookingApplication.model.flight.Flights;
+import com.altimetrik.AgentFlightBookingApplication.model.flight.SeatLedger;
 import com.altimetrik.AgentFlightBookingApplication.model.reservation.Reservation;
 import com.altimetrik.AgentFlightBookingApplication.utils.QueryFactory;
+import com.altimetrik.AgentFlightBookingApplication.utils.ServerTime;
+import com.altimetrik.AgentFlightBookingApplication.utils.SingleFlight;
+import com.altimetrik.AgentFlightBookingApplication.utils.WorkerPools;
 
 /**
  * 
@@ -23,7 +38,170 @@ import com.altimetrik.AgentFlightBookingApplication.utils.QueryFactory;
  */
 public enum ServerInterface {
 	INSTANCE;
-	private final String mUrlBase = "http://cs509.cs.wpi.edu:8181/CS509.server/ReservationSystem";
+	private static final String DEFAULT_URL = "http://cs509.cs.wpi.edu:8181/CS509.server/ReservationSystem";
+
+	// time a booking session holds the server lock at most, and waits for it
+	private static final long LEASE_MILLIS = Long.getLong("booking.lease.ms", 30000);
+	private static final long LOCK_WAIT_MILLIS = Long.getLong("booking.lock.wait.ms", 5000);
+	private static final long LOCK_RETRY_MILLIS = 100;
+
+	// buy the seats of several reservations in one request, set by the
+	// system property booking.merge
+	private static final boolean MERGE_PURCHASES = Boolean
+			.parseBoolean(System.getProperty("booking.merge", "true"));
+
+	// age of the oldest purchase replayed from the journal
+	private static final long REPLAY_WINDOW_MINUTES = Long.getLong("booking.journal.replay.minutes", 60);
+
+	// address of the reservation server, set by the system property server.url
+	private volatile String mUrlBase = System.getProperty("server.url", DEFAULT_URL);
+
+	// concurrent identical requests share one download
+	private final SingleFlight<Flights> mFlightRequests = new SingleFlight<Flights>();
+	private final SingleFlight<Airplanes> mAirplaneRequests = new SingleFlight<Airplanes>();
+
+	// HTTP calls to the server, kept alive between requests
+	private volatile Transport mTransport = new HttpClientTransport();
+
+	// booking sessions of a team take turns, the server lock is held by
+	// team and cannot keep two sessions of the same team apart
+	private final ConcurrentHashMap<String, Semaphore> mSessionTurns = new ConcurrentHashMap<String, Semaphore>();
+
+	// purchases written before they are sent, null unless set
+	private volatile BookingJournal mJournal;
+
+	// runs the asynchronous variants, the io pool unless replaced
+	private volatile Executor mExecutor;
+
+	/**
+	 * Point all following requests to another reservation server, like a
+	 * LocalReservationServer
+	 * 
+	 * @param urlBase
+	 *            the url of the server without query, null for the default
+	 *            server
+	 */
+	public void setUrlBase(String urlBase) {
+		mUrlBase = urlBase != null ? urlBase : DEFAULT_URL;
+	}
+
+	/**
+	 * @return the url of the reservation server
+	 */
+	public String getUrlBase() {
+		return mUrlBase;
+	}
+
+	/**
+	 * Replace the transport used to reach the server
+	 * 
+	 * @param transport
+	 *            the transport for all following requests
+	 */
+	public void setTransport(Transport transport) {
+		mTransport = transport;
+	}
+
+	/**
+	 * @return the transport used to reach the server
+	 */
+	public Transport getTransport() {
+		return mTransport;
+	}
+
+	/**
+	 * Replace the executor the asynchronous variants run on
+	 * 
+	 * @param executor
+	 *            the executor, null for the shared io pool
+	 */
+	public void setExecutor(Executor executor) {
+		mExecutor = executor;
+	}
+
+	/**
+	 * @return the executor the asynchronous variants run on
+	 */
+	public Executor getExecutor() {
+		Executor executor = mExecutor;
+		return executor != null ? executor : WorkerPools.io();
+	}
+
+	/**
+	 * Asynchronous variant of getAirports
+	 * 
+	 * @param teamName
+	 *            identifies the name of the team requesting the collection of
+	 *            airports
+	 * @return completes once the airports are published
+	 */
+	public CompletableFuture<Void> getAirportsAsync(String teamName) {
+		return CompletableFuture.runAsync(() -> getAirports(teamName), getExecutor());
+	}
+
+	/**
+	 * Asynchronous variant of getFlights
+	 * 
+	 * @param teamName
+	 *            identifies the name of the team requesting the flights
+	 * @param departureAirport
+	 *            identifies 3 unique code of departure airport
+	 * @param departureDate
+	 *            identifies departure date in yyyy_mm_dd format
+	 * @return completes with the flights of the date and the following date
+	 */
+	public CompletableFuture<Flights> getFlightsAsync(String teamName, String departureAirport,
+			String departureDate) {
+		return CompletableFuture.supplyAsync(() -> getFlights(teamName, departureAirport, departureDate),
+				getExecutor());
+	}
+
+	/**
+	 * Asynchronous variant of getAirplanes
+	 * 
+	 * @param teamName
+	 *            identifies the name of the team requesting the collection of
+	 *            airplanes
+	 * @return completes with the airplanes from server
+	 */
+	public CompletableFuture<Airplanes> getAirplanesAsync(String teamName) {
+		return CompletableFuture.supplyAsync(() -> getAirplanes(teamName), getExecutor());
+	}
+
+	/**
+	 * Asynchronous variant of lock
+	 * 
+	 * @param teamName
+	 *            is the name of team requesting server lock
+	 * @return completes with true if the server was locked successfully
+	 */
+	public CompletableFuture<Boolean> lockAsync(String teamName) {
+		return CompletableFuture.supplyAsync(() -> lock(teamName), getExecutor());
+	}
+
+	/**
+	 * Asynchronous variant of unlock
+	 * 
+	 * @param teamName
+	 *            is the name of the team holding the lock
+	 * @return completes with true if the server was successfully unlocked
+	 */
+	public CompletableFuture<Boolean> unlockAsync(String teamName) {
+		return CompletableFuture.supplyAsync(() -> unlock(teamName), getExecutor());
+	}
+
+	/**
+	 * Asynchronous variant of postFlights
+	 * 
+	 * @param teamName
+	 *            is the name of the team holding the lock
+	 * @param reservation
+	 *            identifies the flights reserved by customer
+	 * @return completes with true if the update was successful
+	 */
+	public CompletableFuture<Boolean> postFlightsAsync(String teamName, Reservation reservation) {
+		return CompletableFuture.supplyAsync(() -> postFlights(teamName, reservation), getExecutor());
+	}
 
 	/**
 	 * Return a collection of all the airports from server
@@ -39,15 +217,21 @@ public enum ServerInterface {
 
 		StringBuffer airportResult, timeZoneResult;
 		String xmlAirports, xmlAirportTimeZone;
+		List<Airport> airports;
 
 		// Get Airports
 
 		airportResult = trySetup(teamName, "airport", null, null, null);
 		xmlAirports = airportResult.toString();
-		Dao.addAllAirports(xmlAirports);
+		airports = Dao.addAllAirports(xmlAirports);
 
 		// get time zones
-		for (Airport airport : Airports.getInstance()) {
+		for (Airport airport : airports) {
+			if (airport.timezone() != null) {
+				// sent by the server
+				continue;
+			}
+
 			String timeZone = airport.quickTimeZone();
 			if (Objects.equals(timeZone, "invalid")) {
 				timeZoneResult = trySetup("", "timezone", airport, null, null);
@@ -57,7 +241,12 @@ public enum ServerInterface {
 				airport.timeZone(timeZone);
 			}
 		}
-		//
+
+		// publish the airports once their time zones are known, a failed
+		// download keeps the airports already published
+		if (!airports.isEmpty()) {
+			Airports.publish(airports);
+		}
 
 	}
 
@@ -78,39 +267,138 @@ public enum ServerInterface {
 	 */
 	public Flights getFlights(String teamName, String departureAirport, String departureDate) {
 
-		StringBuffer result1 = new StringBuffer();
-		StringBuffer result2 = new StringBuffer();
-		String xmlFlights1, xmlFlights2;
-		Flights flights1, flights2, flightsUnion = new Flights();
-		String depDatePlusOne;
-
-		// get flights for date
-		result1 = trySetup(teamName, "flight", null, departureAirport, departureDate);
-		xmlFlights1 = result1.toString();
-		flights1 = Dao.addAllFlights(xmlFlights1);
-
 		// get flights for following date to accommodate local time conversion
-		// border
-		String[] tokens = departureDate.split("_");
-		int year = Integer.parseInt(tokens[0]);
-		int month = Integer.parseInt(tokens[1]);
-		int day = Integer.parseInt(tokens[2]);
-
-		if (day != 31) {
-			day += 1;
+		// border, next to the flights for date
+		String depDatePlusOne = ServerTime.plusDays(departureDate, 1);
+		FutureTask<Flights> nextDay = new FutureTask<Flights>(
+				() -> getFlightsOnDate(teamName, departureAirport, depDatePlusOne));
+		getExecutor().execute(nextDay);
+
+		Flights flights1 = getFlightsOnDate(teamName, departureAirport, departureDate);
+
+		// run the next day here unless a worker already started it, so a
+		// caller on a busy pool never waits for a queued task
+		nextDay.run();
+		Flights flights2;
+		try {
+			flights2 = nextDay.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			flights2 = new Flights();
+		} catch (ExecutionException e) {
+			e.getCause().printStackTrace();
+			flights2 = new Flights();
 		}
-		depDatePlusOne = year + "_" + month + "_" + day;
 
-		result2 = trySetup(teamName, "flight", null, departureAirport, depDatePlusOne);
-		xmlFlights2 = result2.toString();
-		flights2 = Dao.addAllFlights(xmlFlights2);
+		return union(flights1, flights2);
+	}
+
+	/**
+	 * Merge the flights of two days, a flight listed in both is kept once
+	 * 
+	 * @return the flights of the first day followed by the new flights of the
+	 *         second day
+	 */
+	private static Flights union(Flights flights1, Flights flights2) {
+		Flights flightsUnion = new Flights();
+		Set<Long> seen = new HashSet<Long>(flights1.size() * 2);
 
 		flightsUnion.addAll(flights1);
-		flightsUnion.addAll(flights2);
+		for (Flight flight : flights1) {
+			seen.add(identity(flight));
+		}
+		for (Flight flight : flights2) {
+			if (!seen.contains(identity(flight))) {
+				flightsUnion.add(flight);
+			}
+		}
 
 		return flightsUnion;
 	}
 
+	/**
+	 * A flight is identified by its number and departure minute, so a daily
+	 * flight keeping its number on the following day is not merged away
+	 */
+	private static long identity(Flight flight) {
+		return ((long) flight.getNumber() << 32) ^ flight.getDepartureEpochMinute();
+	}
+
+	/**
+	 * Return the flights departing an airport on one date from the shared
+	 * flight cache, downloading them on a miss. The returned Flights may be
+	 * shared with other searches and must not be modified.
+	 * 
+	 * @param teamName
+	 *            identifies the name of the team requesting the flights
+	 * @param departureAirport
+	 *            identifies 3 unique code of departure airport
+	 * @param departureDate
+	 *            identifies departure date in yyyy_mm_dd format
+	 * @return [possibly empty] collection of Flights
+	 */
+	private Flights getFlightsOnDate(String teamName, String departureAirport, String departureDate) {
+		final FlightCache cache = FlightCache.getInstance();
+		Flights flights = cache.get(departureAirport, departureDate);
+		if (flights != null) {
+			return flights;
+		}
+
+		String key = "flight_" + FlightCache.key(departureAirport, departureDate);
+		return mFlightRequests.execute(key, () -> {
+			// another request may have filled the cache since the miss
+			Flights cached = cache.get(departureAirport, departureDate);
+			if (cached != null) {
+				return cached;
+			}
+
+			// a booking invalidating the airport during the download keeps
+			// the flights downloaded out of the cache
+			long generation = cache.generation(departureAirport);
+			Flights downloaded = fetchFlights(teamName, departureAirport, departureDate);
+			if (downloaded == null) {
+				// do not cache a failed download
+				return new Flights();
+			}
+			cache.put(departureAirport, departureDate, downloaded, generation);
+			return downloaded;
+		});
+	}
+
+	/**
+	 * Return the flights departing an airport on one date
+	 * 
+	 * With the streaming parser enabled the response is parsed straight from
+	 * the connection stream, otherwise it is read into a String and parsed as
+	 * a DOM tree so both paths can be compared.
+	 * 
+	 * @param teamName
+	 *            identifies the name of the team requesting the flights
+	 * @param departureAirport
+	 *            identifies 3 unique code of departure airport
+	 * @param departureDate
+	 *            identifies departure date in yyyy_mm_dd format
+	 * @return [possibly empty] collection of Flights from server, null if the
+	 *         download failed
+	 */
+	private Flights fetchFlights(String teamName, String departureAirport, String departureDate) {
+		if (!Dao.isStreamingParser()) {
+			StringBuffer result = trySetup(teamName, "flight", null, departureAirport, departureDate);
+			return result.length() == 0 ? null : Dao.addAllFlights(result.toString());
+		}
+
+		String url = mUrlBase + QueryFactory.getFlights(teamName, departureAirport, departureDate);
+		try (Transport.Response response = mTransport.get(url, teamName)) {
+			if (response.isSuccess()) {
+				return Dao.addAllFlights(response.body());
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		return null;
+	}
+
 	/**
 	 * Return a collection of all the airplanes from server
 	 * 
@@ -124,16 +412,23 @@ public enum ServerInterface {
 	 */
 	public Airplanes getAirplanes(String teamName) {
 
-		StringBuffer result;
-		String xmlAirplanes;
-		Airplanes airplanes;
+		return mAirplaneRequests.execute("airplane_" + teamName, () -> {
+			StringBuffer result;
+			String xmlAirplanes;
 
-		result = trySetup(teamName, "airplane", null, null, null);
+			result = trySetup(teamName, "airplane", null, null, null);
 
-		xmlAirplanes = result.toString();
-		airplanes = Dao.addAllAirplanes(xmlAirplanes);
-		return airplanes;
+			xmlAirplanes = result.toString();
+			return Dao.addAllAirplanes(xmlAirplanes);
+		});
+	}
 
+	/**
+	 * @return number of requests answered by an identical request already in
+	 *         flight instead of going to the server
+	 */
+	public long coalescedRequests() {
+		return mFlightRequests.coalesced() + mAirplaneRequests.coalesced();
 	}
 
 	/**
@@ -158,49 +453,32 @@ public enum ServerInterface {
 
 	public StringBuffer trySetup(String teamName, String type, Airport airport, String departureAirport,
 			String departureDate) {
-		URL url;
-		HttpURLConnection connection;
-		BufferedReader reader;
-		String line;
+		String url;
 		StringBuffer result = new StringBuffer();
 
-		try {
-			/**
-			 * Create an HTTP connection to the server for a GET for flight,
-			 * airplane, airport, or timezone
-			 */
-			if (type == "airplane") {
-				url = new URL(mUrlBase + QueryFactory.getAirplanes(teamName));
-			} else if (type == "flight") {
-				url = new URL(mUrlBase + QueryFactory.getFlights(teamName, departureAirport, departureDate));
-			} else if (type == "airport") {
-				url = new URL(mUrlBase + QueryFactory.getAirports(teamName));
-			}
-			// return nothing if type is not airplane, flight, airport, or
-			// timezone
-			else {
-				return null;
-			}
-			connection = (HttpURLConnection) url.openConnection();
-			connection.setRequestMethod("GET");
-			if (type != "timezone")
-				connection.setRequestProperty("User-Agent", teamName);
-
-			/**
-			 * If response code of SUCCESS read the XML string returned line by
-			 * line to build the full return string
-			 */
-			int responseCode = connection.getResponseCode();
-			if (responseCode >= HttpURLConnection.HTTP_OK) {
-				InputStream inputStream = connection.getInputStream();
-				String encoding = connection.getContentEncoding();
-				encoding = (encoding == null ? "UTF-8" : encoding);
-
-				reader = new BufferedReader(new InputStreamReader(inputStream));
-				while ((line = reader.readLine()) != null) {
-					result.append(line);
-				}
-				reader.close();
+		/**
+		 * Send a GET for flight, airplane, airport, or timezone
+		 */
+		if (type == "airplane") {
+			url = mUrlBase + QueryFactory.getAirplanes(teamName);
+		} else if (type == "flight") {
+			url = mUrlBase + QueryFactory.getFlights(teamName, departureAirport, departureDate);
+		} else if (type == "airport") {
+			url = mUrlBase + QueryFactory.getAirports(teamName);
+		}
+		// return nothing if type is not airplane, flight, airport, or
+		// timezone
+		else {
+			return null;
+		}
+
+		/**
+		 * If response code of SUCCESS read the XML string returned to build
+		 * the full return string
+		 */
+		try (Transport.Response response = mTransport.get(url, type != "timezone" ? teamName : null)) {
+			if (response.isSuccess()) {
+				result.append(response.text());
 			}
 		} catch (IOException e) {
 			e.printStackTrace();
@@ -220,34 +498,13 @@ public enum ServerInterface {
 	 * @return true if the server was locked successfully, else false
 	 */
 	public boolean lock(String teamName) {
-		URL url;
-		HttpURLConnection connection;
+		String params = QueryFactory.lock(teamName);
 
-		try {
-			url = new URL(mUrlBase);
-			connection = (HttpURLConnection) url.openConnection();
-			connection.setRequestMethod("POST");
-			connection.setRequestProperty("User-Agent", teamName);
-			connection.setRequestProperty("Accept-Language", "en-US,en;q=0.5");
-
-			String params = QueryFactory.lock(teamName);
-
-			connection.setDoOutput(true);
-			DataOutputStream writer = new DataOutputStream(connection.getOutputStream());
-			writer.writeBytes(params);
-			writer.flush();
-			writer.close();
-
-			BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-			String line;
-			StringBuffer response = new StringBuffer();
-
-			while ((line = in.readLine()) != null) {
-				response.append(line);
+		try (Transport.Response response = mTransport.post(mUrlBase, teamName, params)) {
+			if (!response.isSuccess()) {
+				return false;
 			}
-			in.close();
-
-			System.out.println(response.toString());
+			System.out.println(response.text());
 		} catch (Exception ex) {
 			ex.printStackTrace();
 			return false;
@@ -269,39 +526,11 @@ public enum ServerInterface {
 	 * @return true if the server was successfully unlocked.
 	 */
 	public boolean unlock(String teamName) {
-		URL url;
-		HttpURLConnection connection;
-
-		try {
-			url = new URL(mUrlBase);
-			connection = (HttpURLConnection) url.openConnection();
-			connection.setRequestMethod("POST");
+		String params = QueryFactory.unlock(teamName);
 
-			String params = QueryFactory.unlock(teamName);
-
-			connection.setDoOutput(true);
-			connection.setDoInput(true);
-
-			DataOutputStream writer = new DataOutputStream(connection.getOutputStream());
-			writer.writeBytes(params);
-			writer.flush();
-			writer.close();
-
-			int responseCode = connection.getResponseCode();
-			// System.out.println("\nSending 'POST' to unlock database");
-			// System.out.println(("\nResponse Code : " + responseCode));
-
-			if (responseCode >= HttpURLConnection.HTTP_OK) {
-				BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-				String line;
-				StringBuffer response = new StringBuffer();
-
-				while ((line = in.readLine()) != null) {
-					response.append(line);
-				}
-				in.close();
-
-				System.out.println(response.toString());
+		try (Transport.Response response = mTransport.post(mUrlBase, null, params)) {
+			if (response.isSuccess()) {
+				System.out.println(response.text());
 			}
 		} catch (IOException ex) {
 			ex.printStackTrace();
@@ -323,51 +552,382 @@ public enum ServerInterface {
 	 * @return true if the update was successful
 	 */
 	public boolean postFlights(String teamName, Reservation reservation) {
-		URL url;
-		HttpURLConnection connection;
+		return postFlights(teamName, Collections.singletonList(reservation)).isBought();
+	}
 
-		try {
-			url = new URL(mUrlBase);
-			connection = (HttpURLConnection) url.openConnection();
-			connection.setRequestMethod("POST");
-
-			String params = QueryFactory.updateFlights(teamName, reservation);
-			// System.out.println("params= " + params);
-			connection.setDoOutput(true);
-			connection.setDoInput(true);
-
-			DataOutputStream writer = new DataOutputStream(connection.getOutputStream());
-			writer.writeBytes(params);
-			writer.flush();
-			writer.close();
-
-			int responseCode = connection.getResponseCode();
-			// System.out.println("\nSending 'POST' to update database");
-			// System.out.println(("\nResponse Code : " + responseCode));
-
-			if (responseCode >= HttpURLConnection.HTTP_OK) {
-				BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-				String line;
-				StringBuffer response = new StringBuffer();
-
-				while ((line = in.readLine()) != null) {
-					response.append(line);
-				}
-				in.close();
+	/**
+	 * Update server with the flights of several reservations in one purchase.
+	 * The server buys the seats of all reservations or of none.
+	 * 
+	 * @param teamName
+	 *            is the name of the team holding the lock
+	 * @param reservations
+	 *            identifies the flights reserved by customers
+	 * @return BOUGHT if the update was successful, REFUSED if the server
+	 *         refused it, UNKNOWN if the server did not answer and the seats
+	 *         may have been bought
+	 */
+	public PurchaseOutcome postFlights(String teamName, List<Reservation> reservations) {
+		String flightData = Reservation.toXML(reservations);
+
+		// the intent stays pending only if the process dies before the
+		// answer, a lost answer is reported as a failure and not replayed
+		BookingJournal journal = mJournal;
+		long intent = journal != null ? journal.intent(teamName, flightData) : -1;
+		PurchaseOutcome outcome = buyTickets(teamName, flightData);
+		if (journal != null && outcome == PurchaseOutcome.UNKNOWN) {
+			journal.abandon(intent);
+		} else if (journal != null) {
+			journal.outcome(intent, outcome.isBought());
+		}
+		if (!outcome.isBought()) {
+			return outcome;
+		}
 
-				System.out.println("--------------------------------------------------------");
-				System.out.println("		Your reservation has been confirmed by server");
-				System.out.println("--------------------------------------------------------");
-				System.out.println("\n");
-			}
+		for (Reservation reservation : reservations) {
+			FlightCache.getInstance().onBooking(reservation);
+		}
+
+		System.out.println("--------------------------------------------------------");
+		System.out.println("		Your reservation has been confirmed by server");
+		System.out.println("--------------------------------------------------------");
+		System.out.println("\n");
+		return outcome;
+	}
+
+	/**
+	 * post buyTickets
+	 * 
+	 * @return BOUGHT if the server bought the tickets, REFUSED if it refused,
+	 *         UNKNOWN if it did not answer
+	 */
+	private PurchaseOutcome buyTickets(String teamName, String flightData) {
+		String params = QueryFactory.updateFlights(teamName, flightData);
+
+		try (Transport.Response response = mTransport.post(mUrlBase, null, params)) {
+			return response.isSuccess() ? PurchaseOutcome.BOUGHT : PurchaseOutcome.REFUSED;
 		} catch (IOException ex) {
 			ex.printStackTrace();
-			return false;
+			return PurchaseOutcome.UNKNOWN;
 		} catch (Exception ex) {
 			ex.printStackTrace();
-			return false;
+			return PurchaseOutcome.UNKNOWN;
 		}
-		return true;
+	}
+
+	/**
+	 * Journal every purchase, so purchases interrupted by a crash can be
+	 * replayed
+	 * 
+	 * @param journal
+	 *            the journal, null to stop journaling
+	 */
+	public void setJournal(BookingJournal journal) {
+		mJournal = journal;
+	}
+
+	/**
+	 * @return the journal of purchases, null if purchases are not journaled
+	 */
+	public BookingJournal getJournal() {
+		return mJournal;
+	}
+
+	/**
+	 * Send the purchases of the journal a process death cut off again, if
+	 * they are no older than the minutes set by the system property
+	 * booking.journal.replay.minutes
+	 * 
+	 * @return number of purchases the server bought
+	 */
+	public int replayJournal() {
+		return replayJournal(REPLAY_WINDOW_MINUTES, TimeUnit.MINUTES);
+	}
+
+	/**
+	 * Send the purchases of the journal a process death cut off again. The
+	 * purchases of a team are sent in one booking session. The server cannot
+	 * tell whether a purchase went through before, so a purchase the server
+	 * bought but never answered is bought twice. Older purchases are not sent
+	 * but abandoned and logged, the customer has long been told they failed;
+	 * so is a purchase the server does not answer when sent again.
+	 * The seats bought are counted in the SeatLedger and the cached flights
+	 * holding them are dropped, as after any purchase.
+	 * 
+	 * @param window
+	 *            age of the oldest purchase sent again
+	 * @param unit
+	 *            unit of window
+	 * @return number of purchases the server bought
+	 */
+	public int replayJournal(long window, TimeUnit unit) {
+		BookingJournal journal = mJournal;
+		if (journal == null) {
+			return 0;
+		}
+
+		long oldest = System.currentTimeMillis() - unit.toMillis(window);
+		Map<String, List<BookingJournal.Intent>> byTeam = new LinkedHashMap<String, List<BookingJournal.Intent>>();
+		for (BookingJournal.Intent intent : journal.pending()) {
+			if (intent.time() < oldest) {
+				System.err.println("Not replaying purchase " + intent.id() + " of " + intent.teamName() + " from "
+						+ new Date(intent.time()) + ": " + intent.flightData());
+				journal.abandon(intent.id());
+				continue;
+			}
+			byTeam.computeIfAbsent(intent.teamName(), team -> new ArrayList<BookingJournal.Intent>()).add(intent);
+		}
+
+		int bought = 0;
+		for (Map.Entry<String, List<BookingJournal.Intent>> team : byTeam.entrySet()) {
+			BookingSession session = openSession(team.getKey());
+			if (session == null) {
+				continue;
+			}
+
+			try {
+				for (BookingJournal.Intent intent : team.getValue()) {
+					if (!session.isHeld()) {
+						break;
+					}
+					// a replay without answer may have gone through as well, it
+					// is not sent a third time
+					PurchaseOutcome result = buyTickets(team.getKey(), intent.flightData());
+					if (result == PurchaseOutcome.UNKNOWN) {
+						System.err.println("Replayed purchase " + intent.id() + " of " + team.getKey()
+								+ " got no answer: " + intent.flightData());
+						journal.abandon(intent.id());
+					} else {
+						journal.outcome(intent.id(), result.isBought());
+					}
+					if (result.isBought()) {
+						onReplayed(intent.flightData());
+						bought++;
+					}
+				}
+			} finally {
+				session.close();
+			}
+		}
+		return bought;
+	}
+
+	/**
+	 * count the seats of a replayed purchase and drop the cached flights
+	 * holding them. The purchase names its flights by number only, as
+	 * buyTickets does; the seats are counted on the cached flights of those
+	 * numbers, the flights not cached show them once downloaded.
+	 */
+	private void onReplayed(String flightData) {
+		List<String[]> legs = Dao.parseFlightData(flightData);
+		if (legs == null) {
+			return;
+		}
+
+		Set<Integer> numbers = new HashSet<Integer>();
+		for (String[] leg : legs) {
+			numbers.add(Integer.parseInt(leg[0]));
+		}
+		FlightCache cache = FlightCache.getInstance();
+		List<Flight> cached = cache.flights(numbers);
+		for (String[] leg : legs) {
+			int number = Integer.parseInt(leg[0]);
+			for (Flight flight : cached) {
+				if (flight.getNumber() == number) {
+					SeatLedger.getInstance().sell(flight, "Coach".equals(leg[1]));
+				}
+			}
+		}
+		cache.onBooking(numbers);
+	}
+
+	/**
+	 * Lock the database for a booking session with the lease set by the system
+	 * property booking.lease.ms
+	 * 
+	 * @param teamName
+	 *            is the name of team requesting server lock
+	 * @return the session holding the lock, null if the lock was not acquired
+	 */
+	public BookingSession openSession(String teamName) {
+		return openSession(teamName, LEASE_MILLIS);
+	}
+
+	/**
+	 * Lock the database for a booking session. While another team holds the
+	 * lock, the lock is retried for the time set by the system property
+	 * booking.lock.wait.ms. Sessions of the same team opened in this process
+	 * wait for each other within the same time, as the server would let both
+	 * hold its lock and the first to close would unlock the other.
+	 * 
+	 * @param teamName
+	 *            is the name of team requesting server lock
+	 * @param leaseMillis
+	 *            time the session holds the lock at most
+	 * @return the session holding the lock, null if the lock was not acquired
+	 */
+	public BookingSession openSession(String teamName, long leaseMillis) {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LOCK_WAIT_MILLIS);
+		Semaphore turn = mSessionTurns.computeIfAbsent(teamName, team -> new Semaphore(1, true));
+		try {
+			if (!turn.tryAcquire(LOCK_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+				return null;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+
+		while (!lock(teamName)) {
+			if (System.nanoTime() - deadline >= 0) {
+				turn.release();
+				return null;
+			}
+			try {
+				Thread.sleep(LOCK_RETRY_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				turn.release();
+				return null;
+			}
+		}
+		return new BookingSession(this, teamName, leaseMillis, turn);
+	}
+
+	/**
+	 * Book reservations with as few round trips as possible. A reservation
+	 * booked lately under the same idempotency key is a resubmission, it gets
+	 * the outcome of the first booking from the BookingDedup table and is not
+	 * sent again, unless the server refused the first. The seats are then held in the SeatLedger, reservations it
+	 * knows cannot be served are not sent to the server. All others are booked
+	 * in one session, a new session is only opened when a booking fails or the
+	 * lease runs out. Several reservations are first bought in one purchase,
+	 * if the server refuses it they are bought one by one. A purchase the
+	 * server did not answer may have gone through, its reservations are failed
+	 * and not sent again.
+	 * 
+	 * @param teamName
+	 *            is the name of the team booking
+	 * @param reservations
+	 *            the reservations to book
+	 * @return true for every reservation booked, in the order given
+	 */
+	public boolean[] book(String teamName, List<Reservation> reservations) {
+		BookingDedup dedup = BookingDedup.getInstance();
+		String[] keys = new String[reservations.size()];
+		List<CompletableFuture<Boolean>> outcomes = new ArrayList<CompletableFuture<Boolean>>(keys.length);
+		List<CompletableFuture<Boolean>> earlier = new ArrayList<CompletableFuture<Boolean>>(keys.length);
+		List<Reservation> fresh = new ArrayList<Reservation>(keys.length);
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = reservations.get(i).idempotencyKey();
+			outcomes.add(new CompletableFuture<Boolean>());
+			earlier.add(dedup.claim(keys[i], outcomes.get(i)));
+			if (earlier.get(i) == null) {
+				fresh.add(reservations.get(i));
+			}
+		}
+
+		boolean[] booked = new boolean[keys.length];
+		PurchaseOutcome[] bought = null;
+		try {
+			bought = fresh.isEmpty() ? new PurchaseOutcome[0] : holdAndBuy(teamName, fresh);
+		} finally {
+			// answer the duplicates of this call before waiting for others,
+			// reservations may have been sent if buying threw
+			for (int i = 0, j = 0; i < keys.length; i++) {
+				if (earlier.get(i) == null) {
+					PurchaseOutcome outcome = bought != null ? bought[j++] : PurchaseOutcome.UNKNOWN;
+					booked[i] = outcome.isBought();
+					dedup.complete(keys[i], outcomes.get(i), outcome);
+				}
+			}
+		}
+
+		for (int i = 0; i < keys.length; i++) {
+			if (earlier.get(i) != null) {
+				booked[i] = earlier.get(i).join();
+			}
+		}
+		return booked;
+	}
+
+	private PurchaseOutcome[] holdAndBuy(String teamName, List<Reservation> reservations) {
+		SeatLedger ledger = SeatLedger.getInstance();
+		SeatLedger.Hold[] holds = new SeatLedger.Hold[reservations.size()];
+		List<Reservation> held = new ArrayList<Reservation>(holds.length);
+		for (int i = 0; i < holds.length; i++) {
+			Reservation reservation = reservations.get(i);
+			holds[i] = ledger.hold(reservation.getLegs(), "Coach".equals(reservation.getSeatPreference()));
+			if (holds[i] != null) {
+				held.add(reservation);
+			}
+		}
+
+		PurchaseOutcome[] booked = new PurchaseOutcome[holds.length];
+		Arrays.fill(booked, PurchaseOutcome.REFUSED);
+		PurchaseOutcome[] bought = null;
+		try {
+			bought = held.isEmpty() ? booked : buy(teamName, held);
+		} finally {
+			// the holds not confirmed are given back, also when buy throws
+			for (int i = 0, j = 0; i < holds.length; i++) {
+				if (holds[i] == null) {
+					continue;
+				}
+				if (bought != null) {
+					booked[i] = bought[j++];
+				}
+				if (booked[i].isBought()) {
+					ledger.confirm(holds[i]);
+				} else {
+					ledger.release(holds[i]);
+				}
+			}
+		}
+		return booked;
+	}
+
+	private PurchaseOutcome[] buy(String teamName, List<Reservation> reservations) {
+		PurchaseOutcome[] booked = new PurchaseOutcome[reservations.size()];
+		Arrays.fill(booked, PurchaseOutcome.REFUSED);
+		BookingSession session = null;
+		try {
+			if (MERGE_PURCHASES && booked.length > 1) {
+				session = openSession(teamName);
+				if (session == null) {
+					return booked;
+				}
+				// only a refused purchase is bought again one by one, one
+				// without answer may have bought every seat
+				PurchaseOutcome outcome = session.bookAll(reservations);
+				if (outcome != PurchaseOutcome.REFUSED) {
+					Arrays.fill(booked, outcome);
+					return booked;
+				}
+			}
+
+			for (int i = 0; i < booked.length; i++) {
+				if (session == null || !session.isHeld()) {
+					if (session != null) {
+						session.close();
+					}
+					session = openSession(teamName);
+					if (session == null) {
+						return booked;
+					}
+				}
+				booked[i] = session.book(reservations.get(i));
+				if (booked[i] == PurchaseOutcome.UNKNOWN) {
+					// the server is not answering, the rest is not sent
+					return booked;
+				}
+			}
+		} finally {
+			if (session != null) {
+				session.close();
+			}
+		}
+		return booked;
 	}
 
 }
\ No newline at end of file
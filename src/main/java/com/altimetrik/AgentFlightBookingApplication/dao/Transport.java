@@ -0,0 +1,140 @@
+package com.altimetrik.AgentFlightBookingApplication.dao;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * The HTTP calls ServerInterface makes to the reservation server. Every
+ * Response must be closed; closing it reads what is left of the body so the
+ * connection can be used for the next request.
+ */
+public interface Transport {
+
+	/**
+	 * Send a GET request
+	 *
+	 * @param url
+	 *            the full url including the query
+	 * @param teamName
+	 *            sent as user agent, may be null
+	 * @return the response, to be closed by the caller
+	 * @throws IOException
+	 *             if the request fails
+	 */
+	Response get(String url, String teamName) throws IOException;
+
+	/**
+	 * Send a form encoded POST request
+	 *
+	 * @param url
+	 *            the full url
+	 * @param teamName
+	 *            sent as user agent, may be null
+	 * @param params
+	 *            the form encoded body
+	 * @return the response, to be closed by the caller
+	 * @throws IOException
+	 *             if the request fails
+	 */
+	Response post(String url, String teamName, String params) throws IOException;
+
+	/**
+	 * Status and body of a server response
+	 */
+	final class Response implements Closeable {
+		private final int mStatus;
+		private final InputStream mBody;
+		private final Runnable mOnClose;
+		private boolean mClosed;
+
+		/**
+		 * Initializing constructor.
+		 *
+		 * @param status
+		 *            HTTP status code
+		 * @param body
+		 *            the response body
+		 * @param onClose
+		 *            run once after the body is closed, may be null
+		 */
+		public Response(int status, InputStream body, Runnable onClose) {
+			mStatus = status;
+			mBody = body;
+			mOnClose = onClose;
+		}
+
+		/**
+		 * @return HTTP status code
+		 */
+		public int status() {
+			return mStatus;
+		}
+
+		/**
+		 * @return true for a 2xx status code
+		 */
+		public boolean isSuccess() {
+			return mStatus >= 200 && mStatus < 300;
+		}
+
+		/**
+		 * @return the response body as stream, read it at most once
+		 */
+		public InputStream body() {
+			return mBody;
+		}
+
+		/**
+		 * Read the whole body
+		 *
+		 * @return the body decoded as UTF-8
+		 * @throws IOException
+		 *             if reading fails
+		 */
+		public String text() throws IOException {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = mBody.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * Drain and close the body, also after errors, so the connection is
+		 * kept alive
+		 */
+		public void close() throws IOException {
+			if (mClosed) {
+				return;
+			}
+			mClosed = true;
+
+			try {
+				byte[] buffer = new byte[8192];
+				while (mBody.read(buffer) != -1) {
+					// discard the rest of the body
+				}
+			} catch (IOException e) {
+				// the connection is dropped, nothing to reuse
+			} finally {
+				try {
+					mBody.close();
+				} finally {
+					if (mOnClose != null) {
+						mOnClose.run();
+					}
+				}
+			}
+		}
+	}
+}
@@ -1,10 +1,19 @@
 package com.altimetrik.AgentFlightBookingApplication.driver;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.text.ParseException;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import com.altimetrik.AgentFlightBookingApplication.controller.SearchController;
+import com.altimetrik.AgentFlightBookingApplication.dao.BookingJournal;
+import com.altimetrik.AgentFlightBookingApplication.dao.ReferenceDataSnapshot;
 import com.altimetrik.AgentFlightBookingApplication.dao.ServerInterface;
+import com.altimetrik.AgentFlightBookingApplication.model.airplane.AirplaneCatalog;
+import com.altimetrik.AgentFlightBookingApplication.server.LocalReservationServer;
+import com.altimetrik.AgentFlightBookingApplication.server.ScheduleGenerator;
 
 /**
  * 
@@ -12,14 +21,46 @@ import com.altimetrik.AgentFlightBookingApplication.dao.ServerInterface;
  *
  */
 public class Driver {
+	private static final long AIRPLANE_CATALOG_TTL_MINUTES = Long.getLong("airplane.catalog.ttl.minutes", 30);
+	private static final Path REFERENCE_SNAPSHOT = ReferenceDataSnapshot.defaultPath();
 
-	public static void main(String[] args) throws ParseException {
+	public static void main(String[] args) throws ParseException, IOException {
 
-		// import Airports
-		ServerInterface.INSTANCE.getAirports("Sonu");
+		// with -Dlocal.server=true search and book on a local server with a
+		// generated network instead of the classroom server
+		if (Boolean.getBoolean("local.server")) {
+			LocalReservationServer server = new LocalReservationServer(new ScheduleGenerator()).start(0);
+			ServerInterface.INSTANCE.setUrlBase(server.url());
+		}
 
-		// Try to get a list of airplanes
-		ServerInterface.INSTANCE.getAirplanes("Sonu");
+		// journal purchases and send again the ones a crash interrupted
+		try {
+			ServerInterface.INSTANCE.setJournal(BookingJournal.open(BookingJournal.defaultPath()));
+			int replayed = ServerInterface.INSTANCE.replayJournal();
+			if (replayed > 0) {
+				System.out.println(replayed + " interrupted purchases completed");
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		// import Airports and Airplanes from the local snapshot and refresh
+		// them from the server in the background, download them first if
+		// there is no snapshot yet
+		if (ReferenceDataSnapshot.load(REFERENCE_SNAPSHOT)) {
+			refreshReferenceData().exceptionally(e -> {
+				e.printStackTrace();
+				return null;
+			});
+		} else {
+			refreshReferenceData().join();
+		}
+
+		// searches share the airplane catalog and it is refreshed in the
+		// background
+		AirplaneCatalog catalog = AirplaneCatalog.getInstance();
+		catalog.scheduleRefresh(() -> ServerInterface.INSTANCE.getAirplanes("Sonu"), AIRPLANE_CATALOG_TTL_MINUTES,
+				TimeUnit.MINUTES);
 
 		// Begin search
 		String input;
@@ -40,4 +81,16 @@ public class Driver {
 		} while (validInput);
 
 	}
+
+	/**
+	 * Download the airports and airplanes at the same time and save them to
+	 * the snapshot for the next start
+	 */
+	private static CompletableFuture<Void> refreshReferenceData() {
+		return ServerInterface.INSTANCE.getAirportsAsync("Sonu")
+				.thenAcceptBoth(ServerInterface.INSTANCE.getAirplanesAsync("Sonu"), (airports, airplanes) -> {
+					AirplaneCatalog.getInstance().load(airplanes);
+					ReferenceDataSnapshot.save(REFERENCE_SNAPSHOT);
+				});
+	}
 }
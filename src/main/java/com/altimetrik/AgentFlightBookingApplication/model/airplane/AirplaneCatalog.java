@@ -0,0 +1,186 @@
+package com.altimetrik.AgentFlightBookingApplication.model.airplane;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Process wide index of seat capacity per airplane model. The catalog is
+ * loaded once at startup and every search reads from the same immutable
+ * snapshot. A background refresh replaces the snapshot as a whole, so readers
+ * never see a partially built index.
+ */
+public final class AirplaneCatalog {
+	private static final AirplaneCatalog mInstance = new AirplaneCatalog();
+
+	private volatile Map<String, SeatCapacity> mSeats = Collections.emptyMap();
+	private ScheduledExecutorService mRefresher;
+	private ScheduledFuture<?> mRefreshTask;
+
+	/**
+	 * get the shared catalog
+	 *
+	 * @return the process wide airplane catalog
+	 */
+	public static AirplaneCatalog getInstance() {
+		return mInstance;
+	}
+
+	private AirplaneCatalog() {
+	}
+
+	/**
+	 * Replace the catalog with the airplanes given. If a model is listed more
+	 * than once the first entry wins. An empty or missing list is ignored so a
+	 * failed download never wipes out a good catalog.
+	 *
+	 * @param airplanes
+	 *            airplanes downloaded from the server
+	 */
+	public void load(Airplanes airplanes) {
+		if (airplanes == null || airplanes.isEmpty()) {
+			return;
+		}
+
+		Map<String, SeatCapacity> seats = new HashMap<String, SeatCapacity>();
+		for (Airplane plane : airplanes) {
+			if (!seats.containsKey(plane.getModel())) {
+				seats.put(plane.getModel(), new SeatCapacity(plane.getFirstClassSeats(), plane.getCoachSeats()));
+			}
+		}
+		mSeats = Collections.unmodifiableMap(seats);
+	}
+
+	/**
+	 * @return true once at least one airplane list has been loaded
+	 */
+	public boolean isLoaded() {
+		return !mSeats.isEmpty();
+	}
+
+	/**
+	 * get the seat capacity of an airplane model
+	 *
+	 * @param model
+	 *            the airplane model
+	 * @return seat capacity, or null if the model is unknown
+	 */
+	public SeatCapacity seats(String model) {
+		return mSeats.get(model);
+	}
+
+	/**
+	 * get the seat capacity of every model
+	 *
+	 * @return unmodifiable map from model to seat capacity, empty until the
+	 *         catalog is loaded
+	 */
+	public Map<String, SeatCapacity> models() {
+		return mSeats;
+	}
+
+	/**
+	 * get the number of coach seats of an airplane model
+	 *
+	 * @param model
+	 *            the airplane model
+	 * @return number of coach seats, 0 if the model is unknown
+	 */
+	public int coachSeats(String model) {
+		SeatCapacity capacity = mSeats.get(model);
+		return capacity == null ? 0 : capacity.getCoachSeats();
+	}
+
+	/**
+	 * get the number of first class seats of an airplane model
+	 *
+	 * @param model
+	 *            the airplane model
+	 * @return number of first class seats, 0 if the model is unknown
+	 */
+	public int firstClassSeats(String model) {
+		SeatCapacity capacity = mSeats.get(model);
+		return capacity == null ? 0 : capacity.getFirstClassSeats();
+	}
+
+	/**
+	 * Reload the catalog in the background every ttl. Any refresh already
+	 * scheduled is replaced.
+	 *
+	 * @param loader
+	 *            supplies a fresh list of airplanes, usually from the server
+	 * @param ttl
+	 *            time between two refreshes
+	 * @param unit
+	 *            unit of ttl
+	 */
+	public synchronized void scheduleRefresh(final Supplier<Airplanes> loader, long ttl, TimeUnit unit) {
+		if (ttl <= 0) {
+			throw new IllegalArgumentException(String.valueOf(ttl));
+		}
+
+		cancelRefresh();
+		if (mRefresher == null) {
+			mRefresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "airplane-catalog-refresh");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+
+		mRefreshTask = mRefresher.scheduleWithFixedDelay(() -> {
+			try {
+				load(loader.get());
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}, ttl, ttl, unit);
+	}
+
+	/**
+	 * Stop the background refresh if one is scheduled
+	 */
+	public synchronized void cancelRefresh() {
+		if (mRefreshTask != null) {
+			mRefreshTask.cancel(false);
+			mRefreshTask = null;
+		}
+	}
+
+	/**
+	 * Seat capacity of one airplane model
+	 */
+	public static final class SeatCapacity {
+		private final int firstClassSeats;
+		private final int coachSeats;
+
+		SeatCapacity(int firstClassSeats, int coachSeats) {
+			this.firstClassSeats = firstClassSeats;
+			this.coachSeats = coachSeats;
+		}
+
+		/**
+		 * @return the firstClassSeats
+		 */
+		public int getFirstClassSeats() {
+			return firstClassSeats;
+		}
+
+		/**
+		 * @return the coachSeats
+		 */
+		public int getCoachSeats() {
+			return coachSeats;
+		}
+	}
+}
@@ -234,13 +234,7 @@ public class Airport implements Comparable<Airport>, Comparator<Airport> {
 	 *         and return true
 	 */
 	public static boolean isValidInputCode(String code) {
-		for (Airport airport : Airports.getInstance()) {
-			String airportCode = airport.code();
-			if (airportCode.equals(code)) {
-				return true;
-			}
-		}
-		return false;
+		return Airports.getInstance().contains(code);
 	}
 
 	/**
@@ -1,37 +1,171 @@
 package com.altimetrik.AgentFlightBookingApplication.model.airport;
 
+import java.time.DateTimeException;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 /**
- * 
+ *
  * @author Sonu Agrawal
  *
  */
-public class Airports extends ArrayList<Airport> {
-	private static final long serialVersionUID = 1L;
+/**
+ * Registry of all airports, indexed by their 3 letter code. A registry never
+ * changes once it is built; loading airports publishes a new registry that
+ * replaces the current one as a whole, so it can be read from any thread
+ * without locking. Each airport's time zone is resolved to a ZoneId once when
+ * the registry is built.
+ */
+public final class Airports implements Iterable<Airport> {
 
-	private static Airports mInstance;
-	private ArrayList<String> list = null;
+	private static volatile Airports mInstance = new Airports(Collections.<Airport>emptyList());
 
-	public static Airports getInstance() {
-		if (mInstance == null)
-			mInstance = new Airports();
+	private final List<Airport> mAirports;
+	private final Map<String, Integer> mIndex;
+	private final ZoneId[] mZones;
 
+	/**
+	 * get the current airport registry
+	 *
+	 * @return the registry, empty until airports are published
+	 */
+	public static Airports getInstance() {
 		return mInstance;
 	}
 
-	private Airports() {
-		list = new ArrayList<String>();
+	/**
+	 * Replace the registry with the airports given. Time zones must be set
+	 * before publishing.
+	 *
+	 * @param airports
+	 *            all airports, if a code is listed twice the first one wins
+	 */
+	public static void publish(Collection<Airport> airports) {
+		mInstance = new Airports(airports);
+	}
+
+	private Airports(Collection<Airport> airports) {
+		List<Airport> list = new ArrayList<Airport>(airports.size());
+		Map<String, Integer> index = new HashMap<String, Integer>(airports.size() * 2);
+		List<ZoneId> zones = new ArrayList<ZoneId>(airports.size());
+
+		for (Airport airport : airports) {
+			if (index.containsKey(airport.code())) {
+				continue;
+			}
+			index.put(airport.code(), list.size());
+			list.add(airport);
+			zones.add(resolveZone(airport.timezone()));
+		}
+
+		mAirports = Collections.unmodifiableList(list);
+		mIndex = Collections.unmodifiableMap(index);
+		mZones = zones.toArray(new ZoneId[zones.size()]);
+	}
+
+	private static ZoneId resolveZone(String timeZone) {
+		if (timeZone == null) {
+			return null;
+		}
+		try {
+			return ZoneId.of(timeZone);
+		} catch (DateTimeException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * get the position of an airport in the registry
+	 *
+	 * @param code
+	 *            3 letter code of the airport
+	 * @return position of the airport, -1 if unknown
+	 */
+	public int indexOf(String code) {
+		Integer index = mIndex.get(code);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * get an airport by its code
+	 *
+	 * @param code
+	 *            3 letter code of the airport
+	 * @return the airport, null if unknown
+	 */
+	public Airport get(String code) {
+		Integer index = mIndex.get(code);
+		return index == null ? null : mAirports.get(index);
+	}
+
+	/**
+	 * get an airport by its position
+	 *
+	 * @param index
+	 *            position of the airport in the registry
+	 * @return the airport
+	 */
+	public Airport get(int index) {
+		return mAirports.get(index);
+	}
+
+	/**
+	 * get the time zone of an airport
+	 *
+	 * @param code
+	 *            3 letter code of the airport
+	 * @return the time zone, null if the airport or its time zone is unknown
+	 */
+	public ZoneId zoneId(String code) {
+		Integer index = mIndex.get(code);
+		return index == null ? null : mZones[index];
+	}
+
+	/**
+	 * get the time zone of an airport by its position
+	 *
+	 * @param index
+	 *            position of the airport in the registry
+	 * @return the time zone, null if unknown
+	 */
+	public ZoneId zoneId(int index) {
+		return mZones[index];
 	}
 
-	// retrieve array from anywhere
-	public ArrayList<String> getArray() {
-		return this.list;
+	/**
+	 * @param code
+	 *            3 letter code of the airport
+	 * @return true if the airport is in the registry
+	 */
+	public boolean contains(String code) {
+		return mIndex.containsKey(code);
 	}
 
-	// Add element to array
-	public void addToArray(String value) {
-		list.add(value);
+	/**
+	 * @return number of airports
+	 */
+	public int size() {
+		return mAirports.size();
 	}
 
+	/**
+	 * @return true if no airports are published yet
+	 */
+	public boolean isEmpty() {
+		return mAirports.isEmpty();
+	}
+
+	/**
+	 * iterate over the airports in the order they were loaded
+	 */
+	public Iterator<Airport> iterator() {
+		return mAirports.iterator();
+	}
 }
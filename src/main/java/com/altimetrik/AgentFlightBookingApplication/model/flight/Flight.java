@@ -1,14 +1,13 @@
 package com.altimetrik.AgentFlightBookingApplication.model.flight;
 
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.GregorianCalendar;
-import java.util.Locale;
-import java.util.TimeZone;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
 
 import com.altimetrik.AgentFlightBookingApplication.model.airport.Airport;
 import com.altimetrik.AgentFlightBookingApplication.model.airport.Airports;
+import com.altimetrik.AgentFlightBookingApplication.utils.Prices;
+import com.altimetrik.AgentFlightBookingApplication.utils.ServerTime;
 
 /**
  * 
@@ -25,10 +24,14 @@ public class Flight {
 	private String departureAirportTime;
 	private String arrivalAirport;
 	private String arrivalAirportTime;
+	private long departureEpochMinute; // departure time in UTC minutes since the epoch
+	private long arrivalEpochMinute; // arrival time in UTC minutes since the epoch
 	private int firstClassBooked;
 	private int coachBooked;
 	private String firstClassPrice;
 	private String coachPrice;
+	private long firstClassPriceCents; // firstClassPrice parsed once
+	private long coachPriceCents; // coachPrice parsed once
 	
         
 	/**
@@ -70,10 +73,13 @@ public class Flight {
     }
     
     /**
+	 * Set the departure time, it is parsed once into departureEpochMinute
+	 * 
 	 * @param newValue the departureTime to set
 	 */
     public void setDepartureTime(String newValue) {
     	departureAirportTime = newValue;
+    	departureEpochMinute = newValue == null ? 0 : ServerTime.toEpochMinute(newValue);
     }
     
     /**
@@ -84,10 +90,13 @@ public class Flight {
     }
     
     /**
+	 * Set the arrival time, it is parsed once into arrivalEpochMinute
+	 * 
 	 * @param newValue the arrivalAirportTime to set
 	 */
     public void setArrivalTime(String newValue) {
     	arrivalAirportTime = newValue;
+    	arrivalEpochMinute = newValue == null ? 0 : ServerTime.toEpochMinute(newValue);
     }
     
     /**
@@ -105,17 +114,23 @@ public class Flight {
     }
     
     /**
+	 * Set the first class price, it is parsed once into firstClassPriceCents
+	 * 
 	 * @param newValue the firstClassPrice to set
 	 */
     public void setFirstClassPrice(String newValue) {
     	firstClassPrice = newValue;
+    	firstClassPriceCents = Prices.parseCents(newValue);
     }
     
     /**
+	 * Set the coach price, it is parsed once into coachPriceCents
+	 * 
 	 * @param newValue the coachPrice to set
 	 */
     public void setCoachPrice(String newValue) {
     	coachPrice = newValue;
+    	coachPriceCents = Prices.parseCents(newValue);
     }
     
     /**
@@ -167,6 +182,20 @@ public class Flight {
 		return arrivalAirportTime;
 	}
 	
+	/**
+	 * @return the departure time in UTC minutes since the epoch
+	 */
+	public long getDepartureEpochMinute() {
+		return departureEpochMinute;
+	}
+	
+	/**
+	 * @return the arrival time in UTC minutes since the epoch
+	 */
+	public long getArrivalEpochMinute() {
+		return arrivalEpochMinute;
+	}
+	
 	/**
 	 * @return the firstClassBooked
 	 */
@@ -194,6 +223,20 @@ public class Flight {
 	public String getCoachPrice() {
 		return coachPrice;
 	}
+	
+	/**
+	 * @return the firstClassPrice in cents
+	 */
+	public long getFirstClassPriceCents() {
+		return firstClassPriceCents;
+	}
+	
+	/**
+	 * @return the coachPrice in cents
+	 */
+	public long getCoachPriceCents() {
+		return coachPriceCents;
+	}
 
 
 	/**
@@ -203,21 +246,10 @@ public class Flight {
 	 * @throws ParseException if the date parsing fails
 	 */
 	public String getLocalDepTime() throws ParseException {
-		Airport depAirport = null;
-		String localTime;
-		
 		// Get time zone for departing airport
-		for(Airport airport : Airports.getInstance()) {
-			String name = airport.code();
-	        if(name.equals(departureAirport)) {
-	            depAirport = airport;
-	            break;
-	        }
-	    }
-
-		localTime =  formattedLocalTime(depAirport.timezone(),departureAirportTime);
+		ZoneId zone = Airports.getInstance().zoneId(getDepartureAirport());
 
-		return localTime;
+		return formattedLocalTime(zone,getDepartureEpochMinute());
 	}
 
 	/**
@@ -227,20 +259,10 @@ public class Flight {
 	 * @throws ParseException if the date parsing fails
 	 */
 	public String getLocalArrTime() throws ParseException {
-		Airport arrAirport = null;
-		String localTime;
-
 		// Get time zone for arriving airport
-		for(Airport airport : Airports.getInstance()) {
-			String airportCode = airport.code();
-	        if(airportCode.equals(arrivalAirport)) {
-	            arrAirport = airport;
-	            break;
-	        }
-	    }
-		
-		localTime =  formattedLocalTime(arrAirport.timezone(),arrivalAirportTime);
-		return localTime;
+		ZoneId zone = Airports.getInstance().zoneId(getArrivalAirport());
+
+		return formattedLocalTime(zone,getArrivalEpochMinute());
 	}
 	
 	/**
@@ -250,18 +272,10 @@ public class Flight {
 	 * @throws ParseException if the date parsing fails
 	 */
 	public String getLocalTimeZone() throws ParseException {
-		Airport arrAirport = null;
-
-		// Get time zone for arriving airport
-		for(Airport airport : Airports.getInstance()) {
-			String airportCode = airport.code();
-	        if(airportCode.equals(departureAirport)) {
-	            arrAirport = airport;
-	            break;
-	        }
-	    }
+		// Get time zone for departing airport
+		Airport depAirport = Airports.getInstance().get(getDepartureAirport());
 	
-		return arrAirport.timezone();
+		return depAirport.timezone();
 	}
 	
 	
@@ -273,15 +287,21 @@ public class Flight {
 	 * @throws ParseException if the date parsing fails
 	 */
 	public String formattedLocalTime(String timeZone,String sDate) throws ParseException {
-		GregorianCalendar calendar = new GregorianCalendar(TimeZone.getTimeZone(timeZone));
-		
-	    Date date = new SimpleDateFormat("yyyy MMM dd HH:mm z",Locale.US).parse(sDate);  
-		calendar.setTime(date);
-		
-		SimpleDateFormat formatter = new SimpleDateFormat("yyyy MMM dd HH:mm z",Locale.US);
-		formatter.setTimeZone(TimeZone.getTimeZone(timeZone));
-		String time = formatter.format(calendar.getTime());
-		return time;
+		try {
+			return formattedLocalTime(ZoneId.of(timeZone), ServerTime.toEpochMinute(sDate));
+		} catch (DateTimeParseException e) {
+			throw new ParseException(e.getMessage(), e.getErrorIndex());
+		}
+	}
+	
+	/**
+	 * Returns any time in local time
+	 * @param zone local time zone of current airport
+	 * @param epochMinute departure or arrival time in UTC minutes since the epoch
+	 * @return any time in local time in "yyyy MMM dd HH:mm z" format
+	 */
+	public String formattedLocalTime(ZoneId zone,long epochMinute) {
+		return ServerTime.formatLocal(epochMinute, zone);
 	}
 
 	/**
@@ -290,8 +310,8 @@ public class Flight {
 	public String toString() {
 		StringBuffer sb = new StringBuffer();
 		
-		sb.append(number).append(", ");
-		sb.append(departureAirport).append(", ");
+		sb.append(getNumber()).append(", ");
+		sb.append(getDepartureAirport()).append(", ");
 		try {
 			sb.append(getLocalTimeZone()).append(", ");
 		} catch (ParseException e1) {
@@ -304,7 +324,7 @@ public class Flight {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
-		sb.append(arrivalAirport).append(", ");
+		sb.append(getArrivalAirport()).append(", ");
 		try {
 			sb.append(getLocalArrTime()).append("\n ");
 		} catch (ParseException e) {
@@ -0,0 +1,653 @@
+package com.altimetrik.AgentFlightBookingApplication.model.flight;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Read-only schedule of a whole flight network in columns of primitives,
+ * usually memory-mapped from a file so a full day loads without parsing or
+ * creating a Flight per row. Airports and airplane models are stored once in
+ * tables and referenced by id.
+ *
+ * Rows are ordered by departure airport and departure time, so the departures
+ * of an airport are a contiguous range of rows and the departures within a
+ * time window are found by binary search.
+ *
+ * File layout, all numbers big endian: magic, version, row count, airport
+ * count and model count as ints; the airport codes and model names as length
+ * prefixed UTF-8; padding to 8 bytes; the long columns departure minute,
+ * arrival minute, first class cents and coach cents; the int columns number,
+ * flight time, departure airport, arrival airport, first class booked, coach
+ * booked and model; the first row of each departure airport.
+ */
+public final class FlightStore {
+	private static final int MAGIC = 0x41464653; // "AFFS"
+	private static final int VERSION = 1;
+
+	private final ByteBuffer mData;
+	private final int mRows;
+	private final String[] mAirports;
+	private final String[] mModels;
+	private final Map<String, Integer> mAirportIds;
+	private final Map<String, Integer> mModelIds;
+
+	// offsets of the columns in mData
+	private final int mDepartureMinute;
+	private final int mArrivalMinute;
+	private final int mFirstClassCents;
+	private final int mCoachCents;
+	private final int mNumber;
+	private final int mFlightTime;
+	private final int mDepartureAirport;
+	private final int mArrivalAirport;
+	private final int mFirstClassBooked;
+	private final int mCoachBooked;
+	private final int mModel;
+	private final int mAirportStart;
+
+	private FlightStore(ByteBuffer data) {
+		mData = data.order(ByteOrder.BIG_ENDIAN);
+		if (mData.getInt(0) != MAGIC || mData.getInt(4) != VERSION) {
+			throw new IllegalArgumentException("not a flight store of version " + VERSION);
+		}
+		mRows = mData.getInt(8);
+		mAirports = new String[mData.getInt(12)];
+		mModels = new String[mData.getInt(16)];
+
+		int position = 20;
+		position = readStrings(mData, position, mAirports);
+		position = readStrings(mData, position, mModels);
+		position = align(position);
+
+		mDepartureMinute = position;
+		mArrivalMinute = mDepartureMinute + mRows * 8;
+		mFirstClassCents = mArrivalMinute + mRows * 8;
+		mCoachCents = mFirstClassCents + mRows * 8;
+		mNumber = mCoachCents + mRows * 8;
+		mFlightTime = mNumber + mRows * 4;
+		mDepartureAirport = mFlightTime + mRows * 4;
+		mArrivalAirport = mDepartureAirport + mRows * 4;
+		mFirstClassBooked = mArrivalAirport + mRows * 4;
+		mCoachBooked = mFirstClassBooked + mRows * 4;
+		mModel = mCoachBooked + mRows * 4;
+		mAirportStart = mModel + mRows * 4;
+		if (mAirportStart + (mAirports.length + 1) * 4 > mData.limit()) {
+			throw new IllegalArgumentException("truncated flight store");
+		}
+
+		mAirportIds = index(mAirports);
+		mModelIds = index(mModels);
+	}
+
+	/**
+	 * Build a store on the heap
+	 *
+	 * @param flights
+	 *            the flights of the store
+	 * @return the store
+	 */
+	public static FlightStore build(Collection<? extends Flight> flights) {
+		return new FlightStore(encode(flights));
+	}
+
+	/**
+	 * Write the flights to a store file. The file is written next to the
+	 * target and moved in place.
+	 *
+	 * @param file
+	 *            the store file
+	 * @param flights
+	 *            the flights of the store
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public static void write(Path file, Collection<? extends Flight> flights) throws IOException {
+		ByteBuffer data = encode(flights);
+		Path directory = file.toAbsolutePath().getParent();
+		Files.createDirectories(directory);
+		Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+			while (data.hasRemaining()) {
+				channel.write(data);
+			}
+			channel.force(false);
+		} catch (IOException e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Map a store file read-only
+	 *
+	 * @param file
+	 *            the store file
+	 * @return the store backed by the mapped file
+	 * @throws IOException
+	 *             if the file can not be mapped or is not a flight store
+	 */
+	public static FlightStore open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			try {
+				return new FlightStore(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+			} catch (IllegalArgumentException e) {
+				throw new IOException(file + ": " + e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * @return number of flights
+	 */
+	public int size() {
+		return mRows;
+	}
+
+	/**
+	 * @return number of airports in the airport table
+	 */
+	public int airportCount() {
+		return mAirports.length;
+	}
+
+	/**
+	 * @param code
+	 *            3 letter code of an airport
+	 * @return id of the airport, -1 if no flight departs or arrives there
+	 */
+	public int airportId(String code) {
+		Integer id = mAirportIds.get(code);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * @param airport
+	 *            id of an airport
+	 * @return 3 letter code of the airport
+	 */
+	public String airportCode(int airport) {
+		return mAirports[airport];
+	}
+
+	/**
+	 * @return number of airplane models in the model table
+	 */
+	public int modelCount() {
+		return mModels.length;
+	}
+
+	/**
+	 * @param model
+	 *            id of an airplane model
+	 * @return name of the model
+	 */
+	public String modelName(int model) {
+		return mModels[model];
+	}
+
+	/**
+	 * @param name
+	 *            name of an airplane model
+	 * @return id of the model, -1 if no flight uses it
+	 */
+	public int modelId(String name) {
+		Integer id = mModelIds.get(name);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * @param airport
+	 *            id of the departure airport
+	 * @return first row departing the airport
+	 */
+	public int departuresFrom(int airport) {
+		return mData.getInt(mAirportStart + airport * 4);
+	}
+
+	/**
+	 * @param airport
+	 *            id of the departure airport
+	 * @return row after the last row departing the airport
+	 */
+	public int departuresTo(int airport) {
+		return mData.getInt(mAirportStart + (airport + 1) * 4);
+	}
+
+	/**
+	 * Find the first departure of an airport at or after a minute
+	 *
+	 * @param airport
+	 *            id of the departure airport
+	 * @param minute
+	 *            UTC minutes since the epoch
+	 * @return the row, departuresTo(airport) if none departs that late
+	 */
+	public int firstDepartureAt(int airport, long minute) {
+		int low = departuresFrom(airport);
+		int high = departuresTo(airport);
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (departureMinute(middle) < minute) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @param row
+	 *            the row
+	 * @return the flight number
+	 */
+	public int number(int row) {
+		return mData.getInt(mNumber + row * 4);
+	}
+
+	/**
+	 * @param row
+	 *            the row
+	 * @return the flight time in minutes
+	 */
+	public int flightTime(int row) {
+		return mData.getInt(mFlightTime + row * 4);
+	}
+
+	/**
+	 * @param row
+	 *            the row
+	 * @return id of the departure airport
+	 */
+	public int departureAirport(int row) {
+		return mData.getInt(mDepartureAirport + row * 4);
+	}
+
+	/**
+	 * @param row
+	 *            the row
+	 * @return id of the arrival airport
+	 */
+	public int arrivalAirport(int row) {
+		return mData.getInt(mArrivalAirport + row * 4);
+	}
+
+	/**
+	 * @param row
+	 *            the row
+	 * @return the departure time in UTC minutes since the epoch
+	 */
+	public long departureMinute(int row) {
+		return mData.getLong(mDepartureMinute + row * 8);
+	}
+
+	/**
+	 * @param row
+	 *            the row
+	 * @return the arrival time in UTC minutes since the epoch
+	 */
+	public long arrivalMinute(int row) {
+		return mData.getLong(mArrivalMinute + row * 8);
+	}
+
+	/**
+	 * @param row
+	 *            the row
+	 * @return the first class price in cents
+	 */
+	public long firstClassCents(int row) {
+		return mData.getLong(mFirstClassCents + row * 8);
+	}
+
+	/**
+	 * @param row
+	 *            the row
+	 * @return the coach price in cents
+	 */
+	public long coachCents(int row) {
+		return mData.getLong(mCoachCents + row * 8);
+	}
+
+	/**
+	 * @param row
+	 *            the row
+	 * @return number of first class seats booked
+	 */
+	public int firstClassBooked(int row) {
+		return mData.getInt(mFirstClassBooked + row * 4);
+	}
+
+	/**
+	 * @param row
+	 *            the row
+	 * @return number of coach seats booked
+	 */
+	public int coachBooked(int row) {
+		return mData.getInt(mCoachBooked + row * 4);
+	}
+
+	/**
+	 * @param row
+	 *            the row
+	 * @return id of the airplane model
+	 */
+	public int model(int row) {
+		return mData.getInt(mModel + row * 4);
+	}
+
+	/**
+	 * get a read-only Flight of a row
+	 *
+	 * @param row
+	 *            the row
+	 * @return a view reading the row from the store
+	 */
+	public FlightView view(int row) {
+		return new FlightView(this, row);
+	}
+
+	/**
+	 * get all flights as read-only views
+	 *
+	 * @return one view per row in row order
+	 */
+	public Flights flights() {
+		Flights flights = new Flights();
+		for (int row = 0; row < mRows; row++) {
+			flights.add(view(row));
+		}
+		return flights;
+	}
+
+	/**
+	 * Encode flights in the store layout
+	 */
+	private static ByteBuffer encode(Collection<? extends Flight> flights) {
+		final List<Flight> rows = new ArrayList<Flight>(flights);
+		Map<String, Integer> airports = new LinkedHashMap<String, Integer>();
+		Map<String, Integer> models = new LinkedHashMap<String, Integer>();
+		for (Flight flight : rows) {
+			id(airports, text(flight.getDepartureAirport()));
+			id(airports, text(flight.getArrivalAirport()));
+			id(models, text(flight.getAirplane()));
+		}
+
+		// order by departure airport, then departure time
+		final Map<String, Integer> airportIds = airports;
+		Collections.sort(rows, Comparator.<Flight>comparingInt(f -> airportIds.get(text(f.getDepartureAirport())))
+				.thenComparingLong(Flight::getDepartureEpochMinute));
+
+		String[] airportCodes = airports.keySet().toArray(new String[airports.size()]);
+		String[] modelNames = models.keySet().toArray(new String[models.size()]);
+		ByteBuffer data = ByteBuffer.allocate((int) Encoder.size(airportCodes, modelNames, rows.size()));
+		Encoder encoder = new Encoder(data, airportCodes, modelNames, rows.size());
+		for (Flight flight : rows) {
+			encoder.add(flight);
+		}
+		encoder.finish();
+		return data;
+	}
+
+	/**
+	 * Writes a store file row by row, for schedules too large to hold as
+	 * Flight objects. The airport and model tables and the number of rows are
+	 * given up front and the rows are added in store order: by departure
+	 * airport in the order of the airport table, then by departure time. The
+	 * file is written next to the target and moved in place on close.
+	 */
+	public static final class Writer implements Closeable {
+		private final Path mFile;
+		private final Path mTemp;
+		private final FileChannel mChannel;
+		private final Encoder mEncoder;
+		private boolean mClosed;
+
+		/**
+		 * Initializing constructor.
+		 *
+		 * @param file
+		 *            the store file
+		 * @param airports
+		 *            codes of all departure and arrival airports
+		 * @param models
+		 *            names of all airplane models
+		 * @param rows
+		 *            number of flights that will be added
+		 * @throws IOException
+		 *             if the file can not be created or would be larger than
+		 *             a store can map
+		 */
+		public Writer(Path file, Collection<String> airports, Collection<String> models, int rows)
+				throws IOException {
+			String[] airportCodes = airports.toArray(new String[airports.size()]);
+			String[] modelNames = models.toArray(new String[models.size()]);
+			long size = Encoder.size(airportCodes, modelNames, rows);
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException(file + ": " + rows + " flights do not fit in one store");
+			}
+
+			mFile = file;
+			Path directory = file.toAbsolutePath().getParent();
+			Files.createDirectories(directory);
+			mTemp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+			try {
+				mChannel = FileChannel.open(mTemp, StandardOpenOption.READ, StandardOpenOption.WRITE);
+				mEncoder = new Encoder(mChannel.map(FileChannel.MapMode.READ_WRITE, 0, size), airportCodes,
+						modelNames, rows);
+			} catch (IOException | RuntimeException e) {
+				Files.deleteIfExists(mTemp);
+				throw e;
+			}
+		}
+
+		/**
+		 * Add the next row
+		 *
+		 * @param flight
+		 *            the flight, departing at or after the previous flight of
+		 *            the same airport
+		 * @throws IllegalArgumentException
+		 *             if the flight is out of order or an airport or model is
+		 *             not in the tables
+		 */
+		public void add(Flight flight) {
+			mEncoder.add(flight);
+		}
+
+		/**
+		 * Finish the store and move it in place
+		 *
+		 * @throws IOException
+		 *             if writing fails or fewer rows were added than announced
+		 */
+		public void close() throws IOException {
+			if (mClosed) {
+				return;
+			}
+			mClosed = true;
+
+			try {
+				try {
+					mEncoder.finish();
+					((MappedByteBuffer) mEncoder.mData).force();
+				} finally {
+					mChannel.close();
+				}
+			} catch (IOException | RuntimeException e) {
+				Files.deleteIfExists(mTemp);
+				throw e instanceof IOException ? (IOException) e : new IOException(mFile + ": " + e.getMessage(), e);
+			}
+			Files.move(mTemp, mFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+	}
+
+	/**
+	 * Writes the store layout into a buffer of Encoder.size bytes, one row
+	 * at a time into every column
+	 */
+	private static final class Encoder {
+		private final ByteBuffer mData;
+		private final int mRows;
+		private final int mAirportCount;
+		private final Map<String, Integer> mAirportIds;
+		private final Map<String, Integer> mModelIds;
+		private final int[] mStart; // first row of every departure airport
+		private final int mColumns;
+		private int mRow;
+		private int mLastAirport;
+		private long mLastMinute = Long.MIN_VALUE;
+
+		Encoder(ByteBuffer data, String[] airports, String[] models, int rows) {
+			mData = data.order(ByteOrder.BIG_ENDIAN);
+			mRows = rows;
+			mAirportCount = airports.length;
+			mAirportIds = index(airports);
+			mModelIds = index(models);
+			mStart = new int[airports.length + 1];
+			Arrays.fill(mStart, -1);
+
+			mData.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, rows).putInt(12, airports.length).putInt(16,
+					models.length);
+			mData.position(20);
+			writeStrings(mData, airports);
+			writeStrings(mData, models);
+			mColumns = align(mData.position());
+		}
+
+		static long size(String[] airports, String[] models, int rows) {
+			return align(20 + stringsSize(airports) + stringsSize(models)) + (long) rows * (4 * 8 + 7 * 4)
+					+ (airports.length + 1) * 4L;
+		}
+
+		void add(Flight f) {
+			if (mRow == mRows)
+				throw new IllegalArgumentException("more than " + mRows + " flights");
+			int departure = lookup(mAirportIds, f.getDepartureAirport());
+			if (departure < mLastAirport || departure == mLastAirport && f.getDepartureEpochMinute() < mLastMinute)
+				throw new IllegalArgumentException("flight " + f.getNumber() + " is out of order");
+
+			int row = mRow++;
+			int longs = mColumns + row * 8;
+			mData.putLong(longs, f.getDepartureEpochMinute());
+			mData.putLong(longs + mRows * 8, f.getArrivalEpochMinute());
+			mData.putLong(longs + mRows * 16, f.getFirstClassPriceCents());
+			mData.putLong(longs + mRows * 24, f.getCoachPriceCents());
+
+			int ints = mColumns + mRows * 32 + row * 4;
+			mData.putInt(ints, f.getNumber());
+			mData.putInt(ints + mRows * 4, f.getFlightTime());
+			mData.putInt(ints + mRows * 8, departure);
+			mData.putInt(ints + mRows * 12, lookup(mAirportIds, f.getArrivalAirport()));
+			mData.putInt(ints + mRows * 16, f.getFirstClassBooked());
+			mData.putInt(ints + mRows * 20, f.getCoachBooked());
+			mData.putInt(ints + mRows * 24, lookup(mModelIds, f.getAirplane()));
+
+			if (mStart[departure] < 0)
+				mStart[departure] = row;
+			mLastAirport = departure;
+			mLastMinute = f.getDepartureEpochMinute();
+		}
+
+		void finish() {
+			if (mRow != mRows)
+				throw new IllegalStateException(mRow + " of " + mRows + " flights added");
+
+			// airports without departures start where the next airport starts
+			mStart[mAirportCount] = mRows;
+			for (int airport = mAirportCount - 1; airport >= 0; airport--) {
+				if (mStart[airport] < 0)
+					mStart[airport] = mStart[airport + 1];
+			}
+
+			int position = mColumns + mRows * (4 * 8 + 7 * 4);
+			for (int value : mStart) {
+				mData.putInt(position, value);
+				position += 4;
+			}
+			mData.limit(position).position(0);
+		}
+
+		private static int lookup(Map<String, Integer> ids, String value) {
+			Integer id = ids.get(text(value));
+			if (id == null)
+				throw new IllegalArgumentException(value + " is not in the table");
+			return id;
+		}
+	}
+
+	private static String text(String value) {
+		return value == null ? "" : value;
+	}
+
+	private static void id(Map<String, Integer> ids, String value) {
+		if (!ids.containsKey(value)) {
+			ids.put(value, ids.size());
+		}
+	}
+
+	private static Map<String, Integer> index(String[] values) {
+		Map<String, Integer> ids = new HashMap<String, Integer>(values.length * 2);
+		for (int i = 0; i < values.length; i++) {
+			ids.put(values[i], i);
+		}
+		return ids;
+	}
+
+	private static int align(int position) {
+		return (position + 7) & ~7;
+	}
+
+	private static int stringsSize(String[] values) {
+		int size = 0;
+		for (String value : values) {
+			size += 2 + value.getBytes(StandardCharsets.UTF_8).length;
+		}
+		return size;
+	}
+
+	private static void writeStrings(ByteBuffer data, String[] values) {
+		for (String value : values) {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			data.putShort((short) bytes.length).put(bytes);
+		}
+	}
+
+	private static int readStrings(ByteBuffer data, int position, String[] values) {
+		for (int i = 0; i < values.length; i++) {
+			int length = data.getShort(position) & 0xFFFF;
+			byte[] bytes = new byte[length];
+			for (int j = 0; j < length; j++) {
+				bytes[j] = data.get(position + 2 + j);
+			}
+			values[i] = new String(bytes, StandardCharsets.UTF_8);
+			position += 2 + length;
+		}
+		return position;
+	}
+}
@@ -0,0 +1,159 @@
+package com.altimetrik.AgentFlightBookingApplication.model.flight;
+
+import java.time.ZoneId;
+
+import com.altimetrik.AgentFlightBookingApplication.utils.Prices;
+import com.altimetrik.AgentFlightBookingApplication.utils.ServerTime;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Read-only Flight reading one row of a FlightStore. A view holds no copy of
+ * the flight, it can be moved to another row to walk the store without
+ * creating objects. Setters throw UnsupportedOperationException.
+ */
+public final class FlightView extends Flight {
+	private static final ZoneId GMT = ZoneId.of("GMT");
+
+	private final FlightStore mStore;
+	private int mRow;
+
+	FlightView(FlightStore store, int row) {
+		mStore = store;
+		mRow = row;
+	}
+
+	/**
+	 * Move the view to another row of the store
+	 *
+	 * @param row
+	 *            the row to read
+	 * @return this view
+	 */
+	public FlightView moveTo(int row) {
+		mRow = row;
+		return this;
+	}
+
+	/**
+	 * @return the row of the store this view reads
+	 */
+	public int row() {
+		return mRow;
+	}
+
+	public int getNumber() {
+		return mStore.number(mRow);
+	}
+
+	public int getFlightTime() {
+		return mStore.flightTime(mRow);
+	}
+
+	public String getAirplane() {
+		return mStore.modelName(mStore.model(mRow));
+	}
+
+	public String getDepartureAirport() {
+		return mStore.airportCode(mStore.departureAirport(mRow));
+	}
+
+	public String getDepartureAirportTime() {
+		return ServerTime.formatLocal(getDepartureEpochMinute(), GMT);
+	}
+
+	public String getArrivalAirport() {
+		return mStore.airportCode(mStore.arrivalAirport(mRow));
+	}
+
+	public String getArrivalAirportTime() {
+		return ServerTime.formatLocal(getArrivalEpochMinute(), GMT);
+	}
+
+	public long getDepartureEpochMinute() {
+		return mStore.departureMinute(mRow);
+	}
+
+	public long getArrivalEpochMinute() {
+		return mStore.arrivalMinute(mRow);
+	}
+
+	public int getFirstClassBooked() {
+		return mStore.firstClassBooked(mRow);
+	}
+
+	public int getCoachBooked() {
+		return mStore.coachBooked(mRow);
+	}
+
+	public String getFirstClassPrice() {
+		return "$" + Prices.format(getFirstClassPriceCents());
+	}
+
+	public String getCoachPrice() {
+		return "$" + Prices.format(getCoachPriceCents());
+	}
+
+	public long getFirstClassPriceCents() {
+		return mStore.firstClassCents(mRow);
+	}
+
+	public long getCoachPriceCents() {
+		return mStore.coachCents(mRow);
+	}
+
+	public boolean isValid() {
+		return getNumber() != 0;
+	}
+
+	public void setNumber(int newValue) {
+		throw readOnly();
+	}
+
+	public void setFlightTime(int newValue) {
+		throw readOnly();
+	}
+
+	public void setAirplane(String newValue) {
+		throw readOnly();
+	}
+
+	public void setDepartureAirport(String newValue) {
+		throw readOnly();
+	}
+
+	public void setDepartureTime(String newValue) {
+		throw readOnly();
+	}
+
+	public void setArrivalAirport(String newValue) {
+		throw readOnly();
+	}
+
+	public void setArrivalTime(String newValue) {
+		throw readOnly();
+	}
+
+	public void setFirstClassBooked(int newValue) {
+		throw readOnly();
+	}
+
+	public void setCoachBooked(int newValue) {
+		throw readOnly();
+	}
+
+	public void setFirstClassPrice(String newValue) {
+		throw readOnly();
+	}
+
+	public void setCoachPrice(String newValue) {
+		throw readOnly();
+	}
+
+	private static UnsupportedOperationException readOnly() {
+		return new UnsupportedOperationException("flights of a FlightStore are read-only");
+	}
+}
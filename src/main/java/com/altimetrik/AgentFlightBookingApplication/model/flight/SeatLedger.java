@@ -0,0 +1,347 @@
+package com.altimetrik.AgentFlightBookingApplication.model.flight;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.altimetrik.AgentFlightBookingApplication.model.airplane.AirplaneCatalog;
+import com.altimetrik.AgentFlightBookingApplication.utils.WorkerPools;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Seats sold and held by this application, by flight and cabin. A flight is
+ * its number and departure minute, as in ServerInterface.union, so a number
+ * flown again on another day is another flight. The booked counts of
+ * downloaded flights can be minutes old; the ledger adds what happened here
+ * since, so two agents cannot both get the last seat and purchases the server
+ * would refuse are not sent.
+ *
+ * A seat is held before it is bought and confirmed or released after. A hold
+ * that is neither is released when it expires. Holds wait for expiry in
+ * creation order, which is expiry order as all last the same time; a hold
+ * confirmed or released leaves the queue at once. Every flight and cabin has one
+ * counter packing the seats sold in the upper and the seats held in the lower
+ * 32 bits, updated without locks. Sold seats are counted from the highest of
+ * the downloaded and the ledger count, so a booking seen by both is counted
+ * once.
+ *
+ * The hold time is set by the system property seat.hold.seconds.
+ */
+public final class SeatLedger {
+	private static final SeatLedger mInstance = new SeatLedger(Long.getLong("seat.hold.seconds", 120),
+			TimeUnit.SECONDS);
+
+	private static final int ACTIVE = 0;
+	private static final int CONFIRMED = 1;
+	private static final int RELEASED = 2;
+
+	private final long mHoldNanos;
+	private final ConcurrentHashMap<Long, AtomicLong> mSeats = new ConcurrentHashMap<Long, AtomicLong>();
+	private final ConcurrentSkipListMap<Long, Hold> mHolds = new ConcurrentSkipListMap<Long, Hold>();
+	private final AtomicLong mNextHold = new AtomicLong();
+	private final AtomicBoolean mSweeping = new AtomicBoolean();
+
+	private final AtomicLong mRefused = new AtomicLong();
+	private final AtomicLong mExpired = new AtomicLong();
+
+	/**
+	 * Seats of the legs of a reservation held for one purchase
+	 */
+	public static final class Hold {
+		private final long mId; // position in the expiry queue
+		private final long[] mKeys;
+		private final long mExpires; // System.nanoTime() the hold ends at
+		private final AtomicInteger mState = new AtomicInteger(ACTIVE);
+
+		private Hold(long id, long[] keys, long expires) {
+			mId = id;
+			mKeys = keys;
+			mExpires = expires;
+		}
+
+		/**
+		 * @return true until the hold is confirmed, released or expired
+		 */
+		public boolean isActive() {
+			return mState.get() == ACTIVE;
+		}
+	}
+
+	/**
+	 * get the shared seat ledger
+	 *
+	 * @return the process wide seat ledger
+	 */
+	public static SeatLedger getInstance() {
+		return mInstance;
+	}
+
+	/**
+	 * Initializing constructor.
+	 *
+	 * @param holdTime
+	 *            time a hold lasts unless confirmed or released
+	 * @param unit
+	 *            unit of holdTime
+	 */
+	public SeatLedger(long holdTime, TimeUnit unit) {
+		if (holdTime <= 0) {
+			throw new IllegalArgumentException(String.valueOf(holdTime));
+		}
+		mHoldNanos = unit.toNanos(holdTime);
+	}
+
+	/**
+	 * Check a flight has a free seat, counting the seats sold and held here
+	 *
+	 * @param flight
+	 *            the flight as downloaded
+	 * @param coach
+	 *            true for a coach seat, false for first class
+	 * @return true if a seat is free
+	 */
+	public boolean isAvailable(Flight flight, boolean coach) {
+		AirplaneCatalog catalog = AirplaneCatalog.getInstance();
+		String model = flight.getAirplane();
+		return coach
+				? isAvailable(flight.getNumber(), flight.getDepartureEpochMinute(), true, flight.getCoachBooked(),
+						catalog.coachSeats(model))
+				: isAvailable(flight.getNumber(), flight.getDepartureEpochMinute(), false,
+						flight.getFirstClassBooked(), catalog.firstClassSeats(model));
+	}
+
+	/**
+	 * Check a flight has a free seat, counting the seats sold and held here
+	 *
+	 * @param number
+	 *            the flight number
+	 * @param departureMinute
+	 *            departure of the flight in UTC minutes since the epoch
+	 * @param coach
+	 *            true for a coach seat, false for first class
+	 * @param booked
+	 *            seats of the cabin booked when the flight was downloaded
+	 * @param seats
+	 *            seats of the cabin
+	 * @return true if a seat is free
+	 */
+	public boolean isAvailable(int number, long departureMinute, boolean coach, int booked, int seats) {
+		if (!mSeats.isEmpty()) {
+			AtomicLong counter = mSeats.get(key(number, departureMinute, coach));
+			if (counter != null) {
+				long value = counter.get();
+				booked = (int) Math.max(booked, sold(value)) + (int) held(value);
+			}
+		}
+		return booked < seats;
+	}
+
+	/**
+	 * Hold a seat on every leg of a reservation, on all legs or on none
+	 *
+	 * @param legs
+	 *            the flights of the reservation, as downloaded
+	 * @param coach
+	 *            true for coach seats, false for first class
+	 * @return the hold, null if a leg has no free seat
+	 */
+	public Hold hold(List<? extends Flight> legs, boolean coach) {
+		AirplaneCatalog catalog = AirplaneCatalog.getInstance();
+		long[] keys = new long[legs.size()];
+		for (int i = 0; i < keys.length; i++) {
+			Flight flight = legs.get(i);
+			keys[i] = key(flight, coach);
+			int booked = coach ? flight.getCoachBooked() : flight.getFirstClassBooked();
+			int seats = coach ? catalog.coachSeats(flight.getAirplane())
+					: catalog.firstClassSeats(flight.getAirplane());
+
+			if (!take(keys[i], booked, seats)) {
+				for (int j = 0; j < i; j++) {
+					add(keys[j], 0, -1);
+				}
+				mRefused.incrementAndGet();
+				return null;
+			}
+		}
+
+		Hold hold = new Hold(mNextHold.incrementAndGet(), keys, System.nanoTime() + mHoldNanos);
+		mHolds.put(hold.mId, hold);
+		if (mSweeping.compareAndSet(false, true)) {
+			WorkerPools.timer().scheduleWithFixedDelay(this::sweep, 1, 1, TimeUnit.SECONDS);
+		}
+		return hold;
+	}
+
+	/**
+	 * Count the held seats as sold, after the server confirmed the purchase.
+	 * The seats are counted even if the hold expired meanwhile.
+	 *
+	 * @param hold
+	 *            the hold of the seats bought
+	 */
+	public void confirm(Hold hold) {
+		int state = hold.mState.getAndSet(CONFIRMED);
+		if (state == CONFIRMED) {
+			return;
+		}
+		mHolds.remove(hold.mId);
+		for (long key : hold.mKeys) {
+			add(key, 1, state == ACTIVE ? -1 : 0);
+		}
+	}
+
+	/**
+	 * Count a seat sold that was not held here, as when a purchase is
+	 * replayed from the journal
+	 *
+	 * @param flight
+	 *            the flight sold
+	 * @param coach
+	 *            true for a coach seat, false for first class
+	 */
+	public void sell(Flight flight, boolean coach) {
+		mSeats.computeIfAbsent(key(flight, coach), k -> new AtomicLong()).addAndGet(1L << 32);
+	}
+
+	/**
+	 * Give the held seats back, after the purchase failed or was abandoned
+	 *
+	 * @param hold
+	 *            the hold to release
+	 */
+	public void release(Hold hold) {
+		if (hold.mState.compareAndSet(ACTIVE, RELEASED)) {
+			mHolds.remove(hold.mId);
+			for (long key : hold.mKeys) {
+				add(key, 0, -1);
+			}
+		}
+	}
+
+	/**
+	 * @param flight
+	 *            the flight
+	 * @param coach
+	 *            true for coach seats, false for first class
+	 * @return seats of the cabin held now
+	 */
+	public int held(Flight flight, boolean coach) {
+		AtomicLong counter = mSeats.get(key(flight, coach));
+		return counter == null ? 0 : (int) held(counter.get());
+	}
+
+	/**
+	 * @param flight
+	 *            the flight
+	 * @param coach
+	 *            true for coach seats, false for first class
+	 * @return seats of the cabin known sold
+	 */
+	public int sold(Flight flight, boolean coach) {
+		AtomicLong counter = mSeats.get(key(flight, coach));
+		return counter == null ? 0 : (int) sold(counter.get());
+	}
+
+	/**
+	 * @return number of holds not confirmed, released or swept after expiry
+	 */
+	public int holds() {
+		return mHolds.size();
+	}
+
+	/**
+	 * @return number of holds refused for lack of seats
+	 */
+	public long refused() {
+		return mRefused.get();
+	}
+
+	/**
+	 * @return number of holds released because they expired
+	 */
+	public long expired() {
+		return mExpired.get();
+	}
+
+	/**
+	 * Forget all seats, holds still active are released
+	 */
+	public void clear() {
+		for (Map.Entry<Long, Hold> entry = mHolds.pollFirstEntry(); entry != null; entry = mHolds.pollFirstEntry()) {
+			entry.getValue().mState.compareAndSet(ACTIVE, RELEASED);
+		}
+		mSeats.clear();
+	}
+
+	/**
+	 * take a held seat if sold and held seats leave one free
+	 */
+	private boolean take(long key, int booked, int seats) {
+		AtomicLong counter = mSeats.computeIfAbsent(key, k -> new AtomicLong());
+		while (true) {
+			long value = counter.get();
+			long sold = Math.max(sold(value), booked);
+			long held = held(value);
+			if (sold + held >= seats) {
+				return false;
+			}
+			if (counter.compareAndSet(value, (sold << 32) | (held + 1))) {
+				return true;
+			}
+		}
+	}
+
+	private void add(long key, long sold, long held) {
+		AtomicLong counter = mSeats.get(key);
+		if (counter != null) { // null once cleared
+			counter.addAndGet((sold << 32) + held);
+		}
+	}
+
+	/**
+	 * release the holds that expired, the oldest are first in the queue
+	 */
+	private void sweep() {
+		long now = System.nanoTime();
+		for (Map.Entry<Long, Hold> entry = mHolds.firstEntry(); entry != null
+				&& now - entry.getValue().mExpires >= 0; entry = mHolds.firstEntry()) {
+			Hold hold = entry.getValue();
+			mHolds.remove(hold.mId);
+			if (hold.mState.compareAndSet(ACTIVE, RELEASED)) {
+				for (long key : hold.mKeys) {
+					add(key, 0, -1);
+				}
+				mExpired.incrementAndGet();
+			}
+		}
+	}
+
+	private static long key(Flight flight, boolean coach) {
+		return key(flight.getNumber(), flight.getDepartureEpochMinute(), coach);
+	}
+
+	/**
+	 * the number in the upper 32 bits, the departure minute in the next 31 and
+	 * the cabin in the lowest; minutes fit up to the year 6053
+	 */
+	private static long key(int number, long departureMinute, boolean coach) {
+		return ((long) number << 32) | ((departureMinute & 0x7FFFFFFFL) << 1) | (coach ? 1 : 0);
+	}
+
+	private static long sold(long value) {
+		return value >>> 32;
+	}
+
+	private static long held(long value) {
+		return value & 0xFFFFFFFFL;
+	}
+}
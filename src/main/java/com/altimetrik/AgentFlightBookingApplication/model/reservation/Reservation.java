@@ -1,13 +1,16 @@
 package com.altimetrik.AgentFlightBookingApplication.model.reservation;
 
-import java.text.DecimalFormat;
 import java.text.ParseException;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.Locale;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.altimetrik.AgentFlightBookingApplication.dao.ServerInterface;
+import com.altimetrik.AgentFlightBookingApplication.model.flight.Flight;
 import com.altimetrik.AgentFlightBookingApplication.model.flight.Flights;
+import com.altimetrik.AgentFlightBookingApplication.utils.Prices;
+import com.altimetrik.AgentFlightBookingApplication.utils.ServerTime;
 
 /**
  * 
@@ -15,12 +18,16 @@ import com.altimetrik.AgentFlightBookingApplication.model.flight.Flights;
  *
  */
 public class Reservation implements Comparable<Reservation> {
+	// numbers the sessions of reservations not given one
+	private static final AtomicLong mSessions = new AtomicLong();
+
 	private int index;
 	private Flights legs;
-	private float totalPrice;
+	private long totalPriceCents;
 	private float travelTime;
 	private String mSeatPreference;
 	private final String mTeamName = "Sonu";
+	private String mSessionId;
 
 	/**
 	 * Initializing constructor.
@@ -38,9 +45,9 @@ public class Reservation implements Comparable<Reservation> {
 	public Reservation(Flights flights, String SeatType, int index) {
 		this.index = index;
 		legs = flights;
-		totalPrice = getTotalPrice();
-		travelTime = getTotalTime();
 		mSeatPreference = SeatType;
+		totalPriceCents = sumPriceCents();
+		travelTime = getTotalTime();
 	}
 
 	public int getIndex() {
@@ -48,22 +55,92 @@ public class Reservation implements Comparable<Reservation> {
 	}
 
 	/**
-	 * This method calculate the total price of flights in a reservation
+	 * Set the booking session of the reservation, like one customer served.
+	 * The same flights booked in two sessions are two bookings, in one session
+	 * they are a resubmission of one booking. A reservation not given a
+	 * session has one of its own.
+	 * 
+	 * @param sessionId
+	 *            identifies the session
+	 */
+	public synchronized void sessionId(String sessionId) {
+		mSessionId = sessionId;
+	}
+
+	/**
+	 * @return the booking session of the reservation
+	 */
+	public synchronized String sessionId() {
+		if (mSessionId == null) {
+			mSessionId = "reservation-" + mSessions.incrementAndGet();
+		}
+		return mSessionId;
+	}
+
+	/**
+	 * Key of the booking made by this reservation, the same for every
+	 * reservation of the same flights and seating in the same session. A leg
+	 * is identified by its number and departure minute, as flight numbers
+	 * repeat on other days.
+	 * 
+	 * @return the idempotency key
+	 */
+	public String idempotencyKey() {
+		StringBuffer sb = new StringBuffer(sessionId());
+		sb.append('|').append(mSeatPreference);
+		for (Flight leg : legs) {
+			sb.append('|').append(leg.getNumber()).append('@').append(leg.getDepartureEpochMinute());
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @return "Coach" or "FirstClass"
+	 */
+	public String getSeatPreference() {
+		return mSeatPreference;
+	}
+
+	/**
+	 * @return the flights of this reservation
+	 */
+	public Flights getLegs() {
+		return legs;
+	}
+
+	/**
+	 * get the total price of flights in a reservation
 	 * 
-	 * @return totalPrice
+	 * @return totalPrice in dollars
 	 */
 	public float getTotalPrice() {
-		totalPrice = 0.00f;
+		return totalPriceCents / 100.0f;
+	}
+
+	/**
+	 * get the total price of flights in a reservation, summed once when the
+	 * reservation is created
+	 * 
+	 * @return totalPrice in cents
+	 */
+	public long getTotalPriceCents() {
+		return totalPriceCents;
+	}
 
+	/**
+	 * This method calculate the total price of flights in the preferred seat
+	 * class
+	 * 
+	 * @return total price in cents
+	 */
+	private long sumPriceCents() {
+		long cents = 0;
+		boolean coach = "Coach".equals(mSeatPreference);
 		for (int i = 0; i < legs.size(); i++) {
-			if (mSeatPreference == "Coach") {
-				totalPrice += Float.parseFloat(legs.get(i).getCoachPrice().replaceAll("[^\\d.]+", ""));
-			} else {
-				totalPrice += Float.parseFloat(legs.get(i).getFirstClassPrice().replaceAll("[^\\d.]+", ""));
-			}
+			Flight flight = legs.get(i);
+			cents += coach ? flight.getCoachPriceCents() : flight.getFirstClassPriceCents();
 		}
-
-		return totalPrice;
+		return cents;
 	}
 
 	/**
@@ -72,20 +149,17 @@ public class Reservation implements Comparable<Reservation> {
 	 * @return the total travel time from start to finish
 	 */
 	public float getTotalTime() {
-		int numLegs = legs.size();
 		travelTime = 0.0f;
-		DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("yyyy MMM d HH:mm z", Locale.US);
-		if (legs == null || numLegs == 0) {
+		if (legs == null || legs.size() == 0) {
 			return 0.00f;
 		}
 
 		// get start time of first leg
 		// get arrival time of last leg
 		// subtract arrival from start
-		LocalDateTime departTimeLocal = LocalDateTime.parse(legs.get(0).getDepartureAirportTime(), dateFormat);
-		LocalDateTime arrivalTimeLocal = LocalDateTime.parse(legs.get(numLegs - 1).getArrivalAirportTime(), dateFormat);
-		float diffInMinutes = java.time.Duration.between(departTimeLocal, arrivalTimeLocal).toMinutes();
-		travelTime += diffInMinutes;
+		long departMinute = legs.get(0).getDepartureEpochMinute();
+		long arrivalMinute = legs.get(legs.size() - 1).getArrivalEpochMinute();
+		travelTime += arrivalMinute - departMinute;
 
 		return travelTime;
 	}
@@ -96,13 +170,11 @@ public class Reservation implements Comparable<Reservation> {
 	 * @return departure time in LocalDateTime format
 	 */
 	public LocalDateTime getDepartureAirportTime() {
-		DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("yyyy MMM d HH:mm z", Locale.US);
 		if (legs == null || legs.size() == 0) {
 			return null;
 		}
 
-		LocalDateTime departTimeLocal = LocalDateTime.parse(legs.get(0).getDepartureAirportTime(), dateFormat);
-		return departTimeLocal;
+		return ServerTime.toLocalDateTime(legs.get(0).getDepartureEpochMinute());
 	}
 
 	/**
@@ -111,14 +183,11 @@ public class Reservation implements Comparable<Reservation> {
 	 * @return Arrival time in LocalDateTime format
 	 */
 	public LocalDateTime getArrivalAirportTime() {
-		DateTimeFormatter dateFormat = DateTimeFormatter.ofPattern("yyyy MMM d HH:mm z", Locale.US);
 		if (legs == null || legs.size() == 0) {
 			return null;
 		}
 
-		LocalDateTime arrivalTimeLocal = LocalDateTime.parse(legs.get(legs.size() - 1).getArrivalAirportTime(),
-				dateFormat);
-		return arrivalTimeLocal;
+		return ServerTime.toLocalDateTime(legs.get(legs.size() - 1).getArrivalEpochMinute());
 	}
 
 	/**
@@ -201,8 +270,7 @@ public class Reservation implements Comparable<Reservation> {
 			sb.append(departureAirportTime3).append("\n");
 		}
 
-		DecimalFormat df = new DecimalFormat("#.00");
-		String totalPriceFormatted = df.format(totalPrice);
+		String totalPriceFormatted = Prices.format(totalPriceCents);
 
 		sb.append("Arrival: ").append(arrivalAirport).append(", ");
 		sb.append(arrivalAirportTime).append("\n");
@@ -242,23 +310,61 @@ public class Reservation implements Comparable<Reservation> {
 	public String toXML() {
 		StringBuffer sb = new StringBuffer();
 		sb.append("<Flights>");
+		appendLegs(sb);
+		sb.append("</Flights>");
+		// System.out.println(sb.toString());
+		return sb.toString();
+	}
+
+	/**
+	 * Convert reservations to one XML string, buying the flights of all of
+	 * them at once
+	 * 
+	 * @param reservations
+	 *            the reservations to buy
+	 * @return the XML string used in flight reservation
+	 */
+	public static String toXML(List<Reservation> reservations) {
+		StringBuffer sb = new StringBuffer();
+		sb.append("<Flights>");
+		for (Reservation reservation : reservations) {
+			reservation.appendLegs(sb);
+		}
+		sb.append("</Flights>");
+		return sb.toString();
+	}
+
+	private void appendLegs(StringBuffer sb) {
 		for (int i = 0; i < legs.size(); i++) {
 			sb.append("<Flight number=\"");
 			sb.append(String.valueOf(legs.get(i).getNumber()));
 			sb.append("\" seating=\"" + mSeatPreference + "\"/>");
 		}
-		sb.append("</Flights>");
-		// System.out.println(sb.toString());
-		return sb.toString();
 	}
 
 	/**
 	 * This method will make reservation for all flight in legs
+	 * 
+	 * @return true if the server confirmed the reservation
+	 */
+	public boolean confirmReservation() {
+		return confirmReservations(Collections.singletonList(this))[0];
+	}
+
+	/**
+	 * Make the reservations in one booking session, so the server is locked
+	 * and unlocked once for all of them
+	 * 
+	 * @param reservations
+	 *            the reservations to make
+	 * @return true for every reservation confirmed by the server, in the order
+	 *         given
 	 */
-	public void confirmReservation() {
-		ServerInterface.INSTANCE.unlock(mTeamName);
-		ServerInterface.INSTANCE.lock(mTeamName);
-		ServerInterface.INSTANCE.postFlights(mTeamName, this);
+	public static boolean[] confirmReservations(List<Reservation> reservations) {
+		if (reservations.isEmpty()) {
+			return new boolean[0];
+		}
+		return ServerInterface.INSTANCE.book(reservations.get(0).mTeamName, reservations);
 	}
 
 }
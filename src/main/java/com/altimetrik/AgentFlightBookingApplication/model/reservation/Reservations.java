@@ -1,9 +1,6 @@
 package com.altimetrik.AgentFlightBookingApplication.model.reservation;
 
-import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 
 /**
  * 
@@ -12,6 +9,7 @@ import java.util.Comparator;
  */
 public class Reservations extends ArrayList<Reservation> {
 	private static final long serialVersionUID = 1L;
+	private static final int INSERTION_SORT_SIZE = 16;
 
 	/**
 	 * This method sort the reservations by total cost from smallest to largest
@@ -20,17 +18,7 @@ public class Reservations extends ArrayList<Reservation> {
 	 *            all matched flights from departure airport to arrival airport
 	 */
 	public void sortbyTotalPrice(Reservations reservations) {
-
-		Comparator<Reservation> comparator = new Comparator<Reservation>() {
-			public int compare(Reservation r1, Reservation r2) {
-
-				double price1 = r1.getTotalPrice();
-				double price2 = r2.getTotalPrice();
-				return price1 < price2 ? -1 : price1 == price2 ? 0 : 1;
-			}
-		};
-
-		Collections.sort(reservations, comparator);
+		reservations.sortBy(SortKey.PRICE);
 	}
 
 	/**
@@ -41,16 +29,7 @@ public class Reservations extends ArrayList<Reservation> {
 	 *            all matched flights from departure airport to arrival airport
 	 */
 	public void sortbyTotalFlightTime(Reservations reservations) {
-
-		Comparator<Reservation> comparator = new Comparator<Reservation>() {
-			public int compare(Reservation r1, Reservation r2) {
-				float t1 = r1.getTotalTime();
-				float t2 = r2.getTotalTime();
-				return t1 < t2 ? -1 : t1 == t2 ? 0 : 1;
-			}
-		};
-
-		Collections.sort(reservations, comparator);
+		reservations.sortBy(SortKey.DURATION);
 	}
 
 	/**
@@ -61,17 +40,7 @@ public class Reservations extends ArrayList<Reservation> {
 	 *            all matched flights from departure airport to arrival airport
 	 */
 	public void sortbyDepartureTime(Reservations reservations) {
-
-		Comparator<Reservation> comparator = new Comparator<Reservation>() {
-			public int compare(Reservation r1, Reservation r2) {
-				LocalDateTime t1 = r1.getDepartureAirportTime();
-				LocalDateTime t2 = r2.getDepartureAirportTime();
-				float diffInMinutes = java.time.Duration.between(t1, t2).toMinutes();
-				return diffInMinutes > 0 ? -1 : t1 == t2 ? 0 : 1;
-			}
-		};
-
-		Collections.sort(reservations, comparator);
+		reservations.sortBy(SortKey.DEPARTURE);
 	}
 
 	/**
@@ -81,16 +50,91 @@ public class Reservations extends ArrayList<Reservation> {
 	 *            all matched flights from departure airport to arrival airport
 	 */
 	public void sortbyArrivalTime(Reservations reservations) {
+		reservations.sortBy(SortKey.ARRIVAL);
+	}
+
+	/**
+	 * Sort the reservations by several keys, for example price then duration
+	 * then departure. Reservations equal on the first key are ordered by the
+	 * second and so on; reservations equal on all keys keep their order.
+	 * 
+	 * The keys are computed once per reservation into long arrays and the
+	 * positions are merge sorted on them, so comparing creates no object.
+	 * 
+	 * @param keys
+	 *            the sort keys, most significant first
+	 */
+	public void sortBy(SortKey... keys) {
+		int count = size();
+		if (count < 2 || keys.length == 0) {
+			return;
+		}
+
+		long[][] columns = new long[keys.length][count];
+		for (int i = 0; i < count; i++) {
+			Reservation reservation = get(i);
+			for (int k = 0; k < keys.length; k++) {
+				columns[k][i] = keys[k].key(reservation);
+			}
+		}
+
+		int[] order = new int[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = i;
+		}
+		mergeSort(order, order.clone(), 0, count, columns);
+
+		Reservation[] sorted = new Reservation[count];
+		for (int i = 0; i < count; i++) {
+			sorted[i] = get(order[i]);
+		}
+		for (int i = 0; i < count; i++) {
+			set(i, sorted[i]);
+		}
+	}
 
-		Comparator<Reservation> comparator = new Comparator<Reservation>() {
-			public int compare(Reservation r1, Reservation r2) {
-				LocalDateTime t1 = r1.getArrivalAirportTime();
-				LocalDateTime t2 = r2.getArrivalAirportTime();
-				float diffInMinutes = java.time.Duration.between(t1, t2).toMinutes();
-				return diffInMinutes > 0 ? -1 : t1 == t2 ? 0 : 1;
+	/**
+	 * Stable sort of order[from, to) by the key columns. buffer holds the same
+	 * positions as order on entry.
+	 */
+	private static void mergeSort(int[] order, int[] buffer, int from, int to, long[][] columns) {
+		if (to - from < INSERTION_SORT_SIZE) {
+			for (int i = from + 1; i < to; i++) {
+				int position = order[i];
+				int j = i;
+				while (j > from && compare(order[j - 1], position, columns) > 0) {
+					order[j] = order[j - 1];
+					j--;
+				}
+				order[j] = position;
 			}
-		};
+			return;
+		}
 
-		Collections.sort(reservations, comparator);
+		// sort both halves of buffer into it, then merge them into order
+		int middle = (from + to) >>> 1;
+		mergeSort(buffer, order, from, middle, columns);
+		mergeSort(buffer, order, middle, to, columns);
+
+		if (compare(buffer[middle - 1], buffer[middle], columns) <= 0) {
+			System.arraycopy(buffer, from, order, from, to - from);
+			return;
+		}
+		for (int i = from, left = from, right = middle; i < to; i++) {
+			if (right >= to || left < middle && compare(buffer[left], buffer[right], columns) <= 0) {
+				order[i] = buffer[left++];
+			} else {
+				order[i] = buffer[right++];
+			}
+		}
+	}
+
+	private static int compare(int a, int b, long[][] columns) {
+		for (long[] column : columns) {
+			if (column[a] != column[b]) {
+				return column[a] < column[b] ? -1 : 1;
+			}
+		}
+		return 0;
 	}
 }
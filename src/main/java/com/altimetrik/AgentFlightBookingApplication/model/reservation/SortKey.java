@@ -0,0 +1,67 @@
+package com.altimetrik.AgentFlightBookingApplication.model.reservation;
+
+import java.util.Comparator;
+
+import com.altimetrik.AgentFlightBookingApplication.model.flight.Flights;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * The criteria reservations can be ordered by, each from smallest to largest
+ */
+public enum SortKey {
+	/**
+	 * total price of all legs
+	 */
+	PRICE,
+	/**
+	 * minutes from the first departure to the last arrival, layovers included
+	 */
+	DURATION,
+	/**
+	 * departure time of the first leg
+	 */
+	DEPARTURE,
+	/**
+	 * arrival time of the last leg
+	 */
+	ARRIVAL;
+
+	/**
+	 * get the comparator ordering reservations by this key
+	 *
+	 * @return comparator from smallest to largest
+	 */
+	public Comparator<Reservation> comparator() {
+		return (r1, r2) -> Long.compare(key(r1), key(r2));
+	}
+
+	/**
+	 * get the value of this key for a reservation, smaller values sort first
+	 *
+	 * @param reservation
+	 *            the reservation
+	 * @return price in cents, or duration, departure or arrival in minutes; 0
+	 *         for a reservation without legs
+	 */
+	public long key(Reservation reservation) {
+		Flights legs = reservation.getLegs();
+		if (legs == null || legs.isEmpty()) {
+			return 0;
+		}
+
+		switch (this) {
+		case PRICE:
+			return reservation.getTotalPriceCents();
+		case DURATION:
+			return legs.get(legs.size() - 1).getArrivalEpochMinute() - legs.get(0).getDepartureEpochMinute();
+		case DEPARTURE:
+			return legs.get(0).getDepartureEpochMinute();
+		default:
+			return legs.get(legs.size() - 1).getArrivalEpochMinute();
+		}
+	}
+}
@@ -0,0 +1,177 @@
+package com.altimetrik.AgentFlightBookingApplication.model.search;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.altimetrik.AgentFlightBookingApplication.model.airplane.AirplaneCatalog;
+import com.altimetrik.AgentFlightBookingApplication.model.airport.Airports;
+import com.altimetrik.AgentFlightBookingApplication.model.flight.Flight;
+import com.altimetrik.AgentFlightBookingApplication.model.flight.FlightStore;
+import com.altimetrik.AgentFlightBookingApplication.model.flight.Flights;
+import com.altimetrik.AgentFlightBookingApplication.model.flight.SeatLedger;
+import com.altimetrik.AgentFlightBookingApplication.utils.ServerTime;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Connection search over the rows of a FlightStore. Flights are read straight
+ * from the columns and partial itineraries are kept as row and parent indexes
+ * in growing int arrays, so checking a flight creates no object. Flights are
+ * only created, as views of the store, for the complete itineraries returned.
+ *
+ * The connections of an arrival are visited in departure order, so the
+ * itineraries are the same as the other engines return on the same flights
+ * but may be listed in another order.
+ */
+class ColumnarSearch {
+	private final SearchFlight mSearch;
+	private final FlightStore mStore;
+	private final int[] mCapacity; // seats of the preferred class by model id
+	private final SeatLedger mLedger = SeatLedger.getInstance();
+
+	// partial itineraries: last row and index of the itinerary extended
+	private int[] mRows = new int[256];
+	private int[] mParents = new int[256];
+	private int mLabels;
+
+	/**
+	 * Initializing constructor.
+	 *
+	 * @param search
+	 *            the search whose airports, date and seat preference are used
+	 * @param store
+	 *            the flights to search
+	 */
+	ColumnarSearch(SearchFlight search, FlightStore store) {
+		mSearch = search;
+		mStore = store;
+
+		AirplaneCatalog catalog = AirplaneCatalog.getInstance();
+		mCapacity = new int[store.modelCount()];
+		for (int model = 0; model < mCapacity.length; model++) {
+			String name = store.modelName(model);
+			mCapacity[model] = search.isCoach() ? catalog.coachSeats(name) : catalog.firstClassSeats(name);
+		}
+	}
+
+	/**
+	 * Find every itinerary to the arrival airport with at most maxStops stop
+	 * overs
+	 *
+	 * @param maxStops
+	 *            maximum number of stop overs
+	 * @return list of Flights from departure to arrival airport
+	 */
+	List<Flights> allItineraries(int maxStops) {
+		List<Flights> result = new ArrayList<Flights>();
+		int departure = mStore.airportId(mSearch.departureAirportCode());
+		int destination = mStore.airportId(mSearch.arrivalAirportCode());
+		ZoneId zone = Airports.getInstance().zoneId(mSearch.departureAirportCode());
+		if (departure < 0 || destination < 0 || zone == null) {
+			return result;
+		}
+
+		int[] arrived = new int[16];
+		int arrivedCount = 0;
+		int[] frontier = new int[64];
+		int frontierCount = 0;
+		int[] next = new int[64];
+
+		// first legs departing on the departure date in local time
+		long day = ServerTime.toEpochDay(mSearch.departureDate());
+		for (int row = mStore.departuresFrom(departure); row < mStore.departuresTo(departure); row++) {
+			if (!isAvailableSeat(row) || ServerTime.localEpochDay(mStore.departureMinute(row), zone) != day) {
+				continue;
+			}
+
+			int label = label(row, -1);
+			if (mStore.arrivalAirport(row) == destination) {
+				arrived = add(arrived, arrivedCount++, label);
+			} else {
+				frontier = add(frontier, frontierCount++, label);
+			}
+		}
+
+		long minLayover = (long) SearchFlight.MIN_LAYOVER_INMINUTES;
+		long maxLayover = (long) SearchFlight.MAX_LAYOVER_INMINUTES;
+		for (int stop = 0; stop < maxStops && frontierCount > 0; stop++) {
+			boolean lastLevel = stop == maxStops - 1;
+			int nextCount = 0;
+
+			for (int i = 0; i < frontierCount; i++) {
+				int parent = frontier[i];
+				int airport = mStore.arrivalAirport(mRows[parent]);
+				long arrival = mStore.arrivalMinute(mRows[parent]);
+				int end = mStore.departuresTo(airport);
+
+				for (int row = mStore.firstDepartureAt(airport, arrival + minLayover); row < end
+						&& mStore.departureMinute(row) <= arrival + maxLayover; row++) {
+					if (!isAvailableSeat(row)) {
+						continue;
+					}
+
+					if (mStore.arrivalAirport(row) == destination) {
+						arrived = add(arrived, arrivedCount++, label(row, parent));
+					} else if (!lastLevel) {
+						next = add(next, nextCount++, label(row, parent));
+					}
+				}
+			}
+
+			int[] swap = frontier;
+			frontier = next;
+			next = swap;
+			frontierCount = nextCount;
+		}
+
+		for (int i = 0; i < arrivedCount; i++) {
+			result.add(toFlights(arrived[i]));
+		}
+		return result;
+	}
+
+	private boolean isAvailableSeat(int row) {
+		int booked = mSearch.isCoach() ? mStore.coachBooked(row) : mStore.firstClassBooked(row);
+		return mLedger.isAvailable(mStore.number(row), mStore.departureMinute(row), mSearch.isCoach(), booked,
+				mCapacity[mStore.model(row)]);
+	}
+
+	private int label(int row, int parent) {
+		if (mLabels == mRows.length) {
+			mRows = Arrays.copyOf(mRows, mLabels * 2);
+			mParents = Arrays.copyOf(mParents, mLabels * 2);
+		}
+		mRows[mLabels] = row;
+		mParents[mLabels] = parent;
+		return mLabels++;
+	}
+
+	private static int[] add(int[] array, int index, int value) {
+		if (index == array.length) {
+			array = Arrays.copyOf(array, index * 2);
+		}
+		array[index] = value;
+		return array;
+	}
+
+	private Flights toFlights(int label) {
+		int legs = 0;
+		for (int l = label; l >= 0; l = mParents[l]) {
+			legs++;
+		}
+
+		Flight[] path = new Flight[legs];
+		for (int l = label, i = legs - 1; l >= 0; l = mParents[l], i--) {
+			path[i] = mStore.view(mRows[l]);
+		}
+
+		Flights flights = new Flights();
+		flights.addAll(Arrays.asList(path));
+		return flights;
+	}
+}
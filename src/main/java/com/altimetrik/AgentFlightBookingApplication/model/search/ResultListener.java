@@ -0,0 +1,24 @@
+package com.altimetrik.AgentFlightBookingApplication.model.search;
+
+import com.altimetrik.AgentFlightBookingApplication.model.reservation.Reservation;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Receives search results one at a time as soon as they are confirmed, while
+ * the search is still running
+ */
+public interface ResultListener {
+	/**
+	 * Called for every result in sort order, outbound results first
+	 *
+	 * @param inbound
+	 *            true if the reservation is for the return trip
+	 * @param reservation
+	 *            the confirmed result
+	 */
+	void onResult(boolean inbound, Reservation reservation);
+}
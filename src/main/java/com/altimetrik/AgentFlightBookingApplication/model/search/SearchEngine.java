@@ -0,0 +1,43 @@
+package com.altimetrik.AgentFlightBookingApplication.model.search;
+
+/**
+ * 
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * The algorithms SearchFlight can search connections with. BFS and
+ * TIME_EXPANDED return the same itineraries in the same order on the same
+ * schedules, PARETO returns the subset of them no other itinerary beats.
+ */
+public enum SearchEngine {
+	/**
+	 * level by level breadth first search copying each partial path
+	 */
+	BFS,
+	/**
+	 * search over the day schedules indexed by departure time, only the
+	 * flights inside the layover window of an arrival are visited
+	 */
+	TIME_EXPANDED,
+	/**
+	 * time expanded search keeping only the itineraries not dominated on
+	 * price, elapsed time and number of legs
+	 */
+	PARETO;
+
+	/**
+	 * get the engine set by the system property search.engine
+	 * 
+	 * @return the configured engine, BFS if none or an unknown one is set
+	 */
+	public static SearchEngine configured() {
+		String engine = System.getProperty("search.engine", BFS.name());
+		try {
+			return valueOf(engine.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			System.err.println("Unknown search.engine " + engine + ", searching with " + BFS);
+			return BFS;
+		}
+	}
+}
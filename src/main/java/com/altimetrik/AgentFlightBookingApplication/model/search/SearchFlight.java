@@ -1,23 +1,30 @@
 package com.altimetrik.AgentFlightBookingApplication.model.search;
 
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.ZoneId;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
 import java.util.Queue;
-import java.util.TimeZone;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 import com.altimetrik.AgentFlightBookingApplication.dao.ServerInterface;
-import com.altimetrik.AgentFlightBookingApplication.model.airplane.Airplane;
-import com.altimetrik.AgentFlightBookingApplication.model.airplane.Airplanes;
+import com.altimetrik.AgentFlightBookingApplication.model.airplane.AirplaneCatalog;
+import com.altimetrik.AgentFlightBookingApplication.model.airport.Airports;
 import com.altimetrik.AgentFlightBookingApplication.model.flight.Flight;
+import com.altimetrik.AgentFlightBookingApplication.model.flight.FlightStore;
 import com.altimetrik.AgentFlightBookingApplication.model.flight.Flights;
+import com.altimetrik.AgentFlightBookingApplication.model.flight.SeatLedger;
+import com.altimetrik.AgentFlightBookingApplication.model.reservation.SortKey;
+import com.altimetrik.AgentFlightBookingApplication.utils.ServerTime;
+import com.altimetrik.AgentFlightBookingApplication.utils.WorkerPools;
 
 /**
  * 
@@ -38,15 +45,15 @@ public class SearchFlight {
 	private String mDepartureDate; // date of departure
 	private String mSeatPreference; // preference of seat class on the airplane
 	private boolean isStopOver; // number of stopOver from departure to arrival
+	private Long mDepartureEpochDay; // date of departure in days since the epoch
 	private final String mTeamName = "Sonu";
-	private final int maxStopOver = 2;
-	private final float MIN_LAYOVER_INMINUTES = 30;
-	private final float MAX_LAYOVER_INMINUTES = 240;
-	private static HashMap<String, Integer> coachSeatsMap;
-	private static HashMap<String, Integer> firstClassSeatsMap;
+	private int maxStopOver = 2;
+	private SearchEngine mEngine = SearchEngine.configured(); // algorithm used by search
+	static final float MIN_LAYOVER_INMINUTES = 30;
+	static final float MAX_LAYOVER_INMINUTES = 240;
 
-	private HashMap<String, Flights> TodayFlightsMap = new HashMap<String, Flights>();
-	private HashMap<String, Flights> TomorrowFlightsMap = new HashMap<String, Flights>();
+	// flights departing an airport, keyed by airport code and date
+	private HashMap<String, Flights> mFlightsMap = new HashMap<String, Flights>();
 
 	/**
 	 * Default constructor
@@ -60,8 +67,7 @@ public class SearchFlight {
 		mDepartureDate = "";
 		mSeatPreference = "";
 		isStopOver = false;
-		coachSeatsMap = this.getCoachSearMap();
-		firstClassSeatsMap = this.getFirstClassSeatsMap();
+		loadAirplaneCatalog();
 	}
 
 	/**
@@ -87,44 +93,71 @@ public class SearchFlight {
 		mDepartureDate = date;
 		mSeatPreference = seat;
 		isStopOver = stop;
-		coachSeatsMap = this.getCoachSearMap();
-		firstClassSeatsMap = this.getFirstClassSeatsMap();
+		loadAirplaneCatalog();
 	}
 
 	/**
-	 * get the available coach seats for each type of airplane
+	 * Set the search engine
 	 * 
-	 * @return HashMap that contains the model as key, number of available coach
-	 *         seats as value
+	 * @param engine
+	 *            algorithm used to search connections
 	 */
-	public HashMap<String, Integer> getCoachSearMap() {
-		HashMap<String, Integer> map = new HashMap<String, Integer>();
-		Airplanes mAirplanes = ServerInterface.INSTANCE.getAirplanes(mTeamName);
-		for (Airplane plane : mAirplanes) {
-			if (!map.containsKey(plane.getModel())) {
-				map.put(plane.getModel(), plane.getCoachSeats());
-			}
-		}
+	public void engine(SearchEngine engine) {
+		mEngine = engine;
+	}
 
-		return map;
+	/**
+	 * get the search engine
+	 * 
+	 * @return algorithm used to search connections
+	 */
+	public SearchEngine engine() {
+		return mEngine;
 	}
 
 	/**
-	 * get the available first class seats for each type of airplane
+	 * Set the maximum number of stop overs searched when stop overs are
+	 * allowed
 	 * 
-	 * @return HashMap that contains the model as key, number of available first
-	 *         class seats as value
+	 * @param stops
+	 *            maximum number of stop overs, 2 by default
 	 */
-	public HashMap<String, Integer> getFirstClassSeatsMap() {
-		HashMap<String, Integer> map = new HashMap<String, Integer>();
-		Airplanes mAirplanes = ServerInterface.INSTANCE.getAirplanes(mTeamName);
-		for (Airplane plane : mAirplanes) {
-			if (!map.containsKey(plane.getModel())) {
-				map.put(plane.getModel(), plane.getFirstClassSeats());
-			}
-		}
+	public void maxStopOver(int stops) {
+		maxStopOver = stops;
+	}
+
+	/**
+	 * get the maximum number of stop overs searched when stop overs are
+	 * allowed
+	 * 
+	 * @return maximum number of stop overs
+	 */
+	public int maxStopOver() {
+		return maxStopOver;
+	}
+
+	String departureAirportCode() {
+		return mDepartureAirportCode;
+	}
 
-		return map;
+	String arrivalAirportCode() {
+		return mArrivalAirportCode;
+	}
+
+	String departureDate() {
+		return mDepartureDate;
+	}
+
+	/**
+	 * Make sure the shared airplane catalog is available. The driver loads it
+	 * at startup, this only downloads the airplanes when a search is started
+	 * without it.
+	 */
+	private void loadAirplaneCatalog() {
+		AirplaneCatalog catalog = AirplaneCatalog.getInstance();
+		if (!catalog.isLoaded()) {
+			catalog.load(ServerInterface.INSTANCE.getAirplanes(mTeamName));
+		}
 	}
 
 	/**
@@ -148,15 +181,24 @@ public class SearchFlight {
 		int bookedSeat = 0;
 		int availableSeat = 0;
 
-		if (mSeatPreference == "Coach") {
+		if (isCoach()) {
 			bookedSeat = flight.getCoachBooked();
-			availableSeat = coachSeatsMap.get(type);
+			availableSeat = AirplaneCatalog.getInstance().coachSeats(type);
 		} else {
 			bookedSeat = flight.getFirstClassBooked();
-			availableSeat = firstClassSeatsMap.get(type);
+			availableSeat = AirplaneCatalog.getInstance().firstClassSeats(type);
 		}
 
-		return bookedSeat >= availableSeat ? false : true;
+		// seats sold and held here since the flight was downloaded
+		return SeatLedger.getInstance().isAvailable(flight.getNumber(), flight.getDepartureEpochMinute(), isCoach(),
+				bookedSeat, availableSeat);
+	}
+
+	/**
+	 * @return true if coach seats are preferred, otherwise first class
+	 */
+	boolean isCoach() {
+		return "Coach".equals(mSeatPreference);
 	}
 
 	/**
@@ -171,13 +213,11 @@ public class SearchFlight {
 	 *             if the date parsing fails
 	 */
 	public boolean isLocalTimeSameDay(Flight flight) throws ParseException {
-		String depDay = flight.getLocalDepTime();
+		ZoneId zone = Airports.getInstance().zoneId(flight.getDepartureAirport());
 
 		// check days
-		String[] tokens1 = depDay.split(" ");
-		int day1 = Integer.parseInt(tokens1[2]);
-		String[] tokens2 = mDepartureDate.split("_");
-		int day2 = Integer.parseInt(tokens2[2]);
+		long day1 = ServerTime.localEpochDay(flight.getDepartureEpochMinute(), zone);
+		long day2 = departureEpochDay();
 
 		if (day1 == day2) {
 			return true;
@@ -187,42 +227,27 @@ public class SearchFlight {
 	}
 
 	/**
-	 * This method adds one day to date given as the parameter.
-	 * 
-	 * @param date
-	 *            represents the date in "yyyy MMM dd HH:mm z" string format.
-	 * @return date represents in "yyyy MMM dd HH:mm z" string format.
-	 * @throws ParseException
-	 *             if the date parsing fails
+	 * @return the departure date in days since the epoch, parsed once
 	 */
-	public String addDay(String date) throws ParseException {
-		SimpleDateFormat formatter = new SimpleDateFormat("yyyy MMM dd HH:mm z", Locale.US);
-		formatter.setTimeZone(TimeZone.getTimeZone("GMT"));
-		Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
-		calendar.setTime(formatter.parse(date));
-		calendar.add(Calendar.DATE, 1);
-		return formatter.format(calendar.getTime());
+	private long departureEpochDay() {
+		if (mDepartureEpochDay == null) {
+			mDepartureEpochDay = ServerTime.toEpochDay(mDepartureDate);
+		}
+		return mDepartureEpochDay;
 	}
 
 	/**
 	 * This method checks for the constraints that the layOver time in the range
 	 * of (0.5hr, 4hr).
 	 * 
-	 * @param arrivalTime
-	 *            arrival time of last flight in "yyyy MMM dd HH:mm z" format.
-	 * @param departureTime
-	 *            departure time of next flight in "yyyy MMM dd HH:mm z" format.
+	 * @param arrivalMinute
+	 *            arrival time of last flight in UTC minutes since the epoch.
+	 * @param departureMinute
+	 *            departure time of next flight in UTC minutes since the epoch.
 	 * @return true if satisfies layOver time constraints.
-	 * @throws ParseException
-	 *             is thrown when the date parsing fails
 	 */
-	public boolean isValidStopOver(String arrivalTime, String departureTime) throws ParseException {
-		DateTimeFormatter mformatter = DateTimeFormatter.ofPattern("yyyy MMM d HH:mm z", Locale.US);
-
-		LocalDateTime departTimeLocal = LocalDateTime.parse(departureTime, mformatter);
-		LocalDateTime arrivalTimeLocal = LocalDateTime.parse(arrivalTime, mformatter);
-
-		float diffInMinutes = java.time.Duration.between(arrivalTimeLocal, departTimeLocal).toMinutes();
+	public boolean isValidStopOver(long arrivalMinute, long departureMinute) {
+		long diffInMinutes = departureMinute - arrivalMinute;
 
 		if (diffInMinutes < MIN_LAYOVER_INMINUTES || diffInMinutes > MAX_LAYOVER_INMINUTES) {
 			return false;
@@ -230,25 +255,6 @@ public class SearchFlight {
 		return true;
 	}
 
-	/**
-	 * This method converts a date string from "yyyy MMM dd HH:mm z" format to
-	 * "yyyy_MM_dd" format.
-	 * 
-	 * @param date
-	 *            String in "yyyy MMM dd HH:mm z" format.
-	 * @return String in "yyyy_MM_dd" format.
-	 * @throws ParseException
-	 *             if the date parsing fails
-	 */
-	public String dateFormatter(String date) throws ParseException {
-
-		SimpleDateFormat formatter = new SimpleDateFormat("yyyy MMM dd HH:mm z", Locale.US);
-		SimpleDateFormat departureDateFormatter = new SimpleDateFormat("yyyy_MM_dd", Locale.US);
-		departureDateFormatter.setTimeZone(TimeZone.getTimeZone("GMT"));
-		String departuredate = departureDateFormatter.format(formatter.parse(date));
-		return departuredate;
-	}
-
 	/**
 	 * This method converts local time to GMT time
 	 * 
@@ -275,30 +281,6 @@ public class SearchFlight {
 		return result;
 	}
 
-	/**
-	 * This method check the next day flights for any flight that arrives after
-	 * 20:00.
-	 * 
-	 * @param arrivalTime
-	 *            represents the arrival time of a flight in "yyyy MMM dd HH:mm
-	 *            z" string format.
-	 * @return true if arrival time of a flight is after 9pm else returns false
-	 *         boolean value.
-	 * @throws ParseException
-	 *             if the date parsing fails
-	 */
-	public boolean checkNextDay(String arrivalTime) throws ParseException {
-		SimpleDateFormat formatter = new SimpleDateFormat("yyyy MMM dd HH:mm z", Locale.US);
-		Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
-		calendar.setTime(formatter.parse(arrivalTime));
-		int hour = calendar.get(Calendar.HOUR);
-
-		if (hour >= 20) {
-			return true;
-		}
-		return false;
-	}
-
 	/**
 	 * This method check if the connected flight is valid. It will both check
 	 * seats and lay over time.
@@ -313,11 +295,110 @@ public class SearchFlight {
 	 *             if the date parsing fails
 	 */
 	public boolean checkValidConnectedFlight(Flight lastFlight, Flight nextFlight) throws ParseException {
-		String arrival = lastFlight.getArrivalAirportTime();
-		String depart = nextFlight.getDepartureAirportTime();
+		long arrival = lastFlight.getArrivalEpochMinute();
+		long depart = nextFlight.getDepartureEpochMinute();
 		return isValidStopOver(arrival, depart) && isAvailableSeat(nextFlight);
 	}
 
+	/**
+	 * This method collects the distinct airport and date pairs the given paths
+	 * continue from and fetches the flights of those not fetched yet
+	 * concurrently. It returns once all of them are available.
+	 * 
+	 * @param paths
+	 *            partial paths of the current search level
+	 * @throws ParseException
+	 *             if the date parsing fails
+	 */
+	public void prefetchConnections(Collection<Flights> paths) throws ParseException {
+		List<String[]> airportDates = new ArrayList<String[]>(paths.size());
+
+		for (Flights path : paths) {
+			Flight lastFlight = path.get(path.size() - 1);
+			String nextDeparture = lastFlight.getArrivalAirport();
+			String date = ServerTime.formatDate(lastFlight.getArrivalEpochMinute());
+			airportDates.add(new String[] { nextDeparture, date });
+		}
+
+		prefetchFlights(airportDates);
+	}
+
+	/**
+	 * Fetch the flights of the given airport and date pairs not fetched yet
+	 * concurrently. It returns once all of them are available.
+	 * 
+	 * @param airportDates
+	 *            pairs of airport code and date in yyyy_mm_dd format
+	 */
+	void prefetchFlights(Collection<String[]> airportDates) {
+		Map<String, String[]> pending = new LinkedHashMap<String, String[]>();
+
+		for (String[] airportDate : airportDates) {
+			requestFlights(pending, airportDate[0], airportDate[1]);
+		}
+
+		if (pending.isEmpty()) {
+			return;
+		}
+
+		ExecutorService pool = WorkerPools.io();
+		Map<String, Future<Flights>> fetches = new LinkedHashMap<String, Future<Flights>>();
+		for (Map.Entry<String, String[]> entry : pending.entrySet()) {
+			final String airport = entry.getValue()[0];
+			final String date = entry.getValue()[1];
+			fetches.put(entry.getKey(), pool.submit(() -> ServerInterface.INSTANCE.getFlights(mTeamName, airport, date)));
+		}
+
+		for (Map.Entry<String, Future<Flights>> fetch : fetches.entrySet()) {
+			Flights flights;
+			try {
+				flights = fetch.getValue().get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				flights = new Flights();
+			} catch (ExecutionException e) {
+				e.getCause().printStackTrace();
+				flights = new Flights();
+			}
+			mFlightsMap.put(fetch.getKey(), flights);
+		}
+	}
+
+	/**
+	 * get the flights departing an airport on a date, fetching them if they
+	 * are not known yet
+	 * 
+	 * @param airport
+	 *            3 letter code of the departure airport
+	 * @param date
+	 *            departure date in yyyy_mm_dd format
+	 * @return flights departing the airport on the date and the day after
+	 */
+	Flights flightsFrom(String airport, String date) {
+		String key = flightsKey(airport, date);
+		Flights flights = mFlightsMap.get(key);
+		if (flights == null) {
+			flights = ServerInterface.INSTANCE.getFlights(mTeamName, airport, date);
+			mFlightsMap.put(key, flights);
+		}
+		return flights;
+	}
+
+	/**
+	 * Add an airport and date to the pending fetches unless its flights are
+	 * already known
+	 */
+	private void requestFlights(Map<String, String[]> pending, String airport, String date) {
+		String key = flightsKey(airport, date);
+		if (!mFlightsMap.containsKey(key) && !pending.containsKey(key)) {
+			pending.put(key, new String[] { airport, date });
+		}
+	}
+
+	private static String flightsKey(String airport, String date) {
+		return airport + "_" + date;
+	}
+
 	/**
 	 * This method search all the flights that satisfies user requirement
 	 * 
@@ -327,9 +408,70 @@ public class SearchFlight {
 	 *             if the date parsing fails
 	 */
 	public List<Flights> search() throws ParseException {
+		if (mEngine == SearchEngine.TIME_EXPANDED) {
+			return new TimeExpandedSearch(this).allItineraries(isStopOver ? maxStopOver : 0);
+		}
+		if (mEngine == SearchEngine.PARETO) {
+			return new TimeExpandedSearch(this).paretoItineraries(isStopOver ? maxStopOver : 0);
+		}
+		return searchBreadthFirst();
+	}
+
+	/**
+	 * This method search all the flights that satisfies user requirement in a
+	 * preloaded schedule instead of the server. Checking a flight creates no
+	 * object, Flights are created for the results only.
+	 * 
+	 * @param store
+	 *            the schedule of the whole network
+	 * @return list of Flights depart from mDepartureAirportCode and arrive at
+	 *         mArrivalAirportCode on mDepartureDate, ordered by departure
+	 */
+	public List<Flights> search(FlightStore store) {
+		return new ColumnarSearch(this, store).allItineraries(isStopOver ? maxStopOver : 0);
+	}
+
+	/**
+	 * This method search the flight that arrives first among all the flights
+	 * that satisfy user requirement
+	 * 
+	 * @return the earliest arriving Flights, null if no flight satisfies the
+	 *         requirement
+	 * @throws ParseException
+	 *             if the date parsing fails
+	 */
+	public Flights earliestArrival() throws ParseException {
+		return new TimeExpandedSearch(this).earliestArrival(isStopOver ? maxStopOver : 0);
+	}
+
+	/**
+	 * This method search the first k flights in the order of the sort key
+	 * among all the flights that satisfy user requirement. Partial paths are
+	 * extended best first, so results are confirmed in order without
+	 * enumerating all of them.
+	 * 
+	 * @param k
+	 *            number of results wanted
+	 * @param sortKey
+	 *            order of the results
+	 * @param listener
+	 *            called with each result as soon as it is confirmed, may be
+	 *            null
+	 * @return at most k Flights ordered by the sort key
+	 * @throws ParseException
+	 *             if the date parsing fails
+	 */
+	public List<Flights> searchTop(int k, SortKey sortKey, Consumer<Flights> listener) throws ParseException {
+		return new TimeExpandedSearch(this).topItineraries(isStopOver ? maxStopOver : 0, k, sortKey, listener);
+	}
+
+	/**
+	 * Level by level search copying each partial path
+	 */
+	private List<Flights> searchBreadthFirst() throws ParseException {
 		int stop = 0;
 		List<Flights> result = new ArrayList<Flights>();
-		Flights flights = ServerInterface.INSTANCE.getFlights(mTeamName, mDepartureAirportCode, mDepartureDate);
+		Flights flights = flightsFrom(mDepartureAirportCode, mDepartureDate);
 		Queue<Flights> currentFlightsQ = new LinkedList<Flights>();
 
 		// check flight from mDepartureAirportCode on mDepartureDate, if there
@@ -361,30 +503,19 @@ public class SearchFlight {
 		while (stop < maxStopOver && !currentFlightsQ.isEmpty()) {
 			Queue<Flights> nextFlightsQ = new LinkedList<Flights>();
 
+			// fetch the flights of every airport this level continues from
+			// at once, then expand the level
+			prefetchConnections(currentFlightsQ);
+
 			while (!currentFlightsQ.isEmpty()) {
 				Flights currentFlights = currentFlightsQ.poll();
 				Flight lastFlight = currentFlights.get(currentFlights.size() - 1);
 				String nextDeparture = lastFlight.getArrivalAirport();
-				String date = dateFormatter(lastFlight.getArrivalAirportTime());
-				Flights nextFlights;
-				if (TodayFlightsMap.get(nextDeparture) != null) {
-					nextFlights = TodayFlightsMap.get(nextDeparture);
-				} else {
-					nextFlights = ServerInterface.INSTANCE.getFlights(mTeamName, nextDeparture, date);
-					TodayFlightsMap.put(nextDeparture, nextFlights);
-				}
 
-				if (checkNextDay(lastFlight.getArrivalAirportTime())) {
-					String nextDay = dateFormatter(addDay(date));
-					Flights nextDayFlights;
-					if (TomorrowFlightsMap.get(nextDeparture) != null) {
-						nextDayFlights = TomorrowFlightsMap.get(nextDeparture);
-					} else {
-						nextDayFlights = ServerInterface.INSTANCE.getFlights(mTeamName, nextDeparture, nextDay);
-						TomorrowFlightsMap.put(nextDeparture, nextDayFlights);
-					}
-					nextFlights.addAll(nextDayFlights);
-				}
+				// getFlights also returns the following day, which covers
+				// every departure within MAX_LAYOVER_INMINUTES of the arrival
+				String date = ServerTime.formatDate(lastFlight.getArrivalEpochMinute());
+				Flights nextFlights = flightsFrom(nextDeparture, date);
 
 				for (Flight flight : nextFlights) {
 					if (!checkValidConnectedFlight(lastFlight, flight)) {
@@ -3,10 +3,14 @@ package com.altimetrik.AgentFlightBookingApplication.model.search;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import com.altimetrik.AgentFlightBookingApplication.model.flight.Flights;
 import com.altimetrik.AgentFlightBookingApplication.model.reservation.Reservation;
 import com.altimetrik.AgentFlightBookingApplication.model.reservation.Reservations;
+import com.altimetrik.AgentFlightBookingApplication.model.reservation.SortKey;
+import com.altimetrik.AgentFlightBookingApplication.utils.WorkerPools;
 
 /**
  * 
@@ -29,6 +33,7 @@ public class SearchFlights {
 	private String mSeatPreference; // preference of seat class on the airplane
 	private boolean isStopOver; // whether has stop over or not
 	private boolean isRoundTrip; // whether is round trip or one way trip
+	private SearchEngine mEngine = SearchEngine.configured(); // algorithm used by search
 
 	/**
 	 * Default constructor
@@ -311,6 +316,25 @@ public class SearchFlights {
 		return isRoundTrip;
 	}
 
+	/**
+	 * Set the search engine
+	 * 
+	 * @param engine
+	 *            algorithm used to search connections
+	 */
+	public void searchEngine(SearchEngine engine) {
+		mEngine = engine;
+	}
+
+	/**
+	 * get the search engine
+	 * 
+	 * @return algorithm used to search connections
+	 */
+	public SearchEngine searchEngine() {
+		return mEngine;
+	}
+
 	/**
 	 * This method will get the search result from SearchFlight class, it will
 	 * check if customer wants return trip before search the return flights
@@ -322,30 +346,120 @@ public class SearchFlights {
 	 */
 	public List<Reservations> getSearchResult() throws ParseException {
 		List<Reservations> result = new ArrayList<Reservations>();
-		SearchFlight outbound = new SearchFlight(mDepartureAirportCode, mArrivalAirportCode, mDepartureDate,
-				mSeatPreference, isStopOver);
-		List<Flights> outboundFlights = outbound.search();
 
-		Reservations outboundReservations = new Reservations();
-		int outboundReservationsIndex = 1;
-		for (Flights flights : outboundFlights) {
-			Reservation reservation = new Reservation(flights, mSeatPreference, outboundReservationsIndex++);
-			outboundReservations.add(reservation);
+		// search the return flights next to the outbound flights
+		CompletableFuture<Reservations> inbound = null;
+		if (isRoundTrip) {
+			inbound = CompletableFuture.supplyAsync(() -> {
+				try {
+					return searchReservations(mArrivalAirportCode, mDepartureAirportCode, mReturnDate);
+				} catch (ParseException e) {
+					throw new CompletionException(e);
+				}
+			}, WorkerPools.search());
+		}
+
+		try {
+			result.add(searchReservations(mDepartureAirportCode, mArrivalAirportCode, mDepartureDate));
+		} catch (ParseException | RuntimeException e) {
+			if (inbound != null) {
+				inbound.cancel(false);
+			}
+			throw e;
+		}
+
+		if (inbound != null) {
+			try {
+				result.add(inbound.join());
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof ParseException)
+					throw (ParseException) e.getCause();
+				if (e.getCause() instanceof RuntimeException)
+					throw (RuntimeException) e.getCause();
+				throw e;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Search one direction and wrap each matched flights into a reservation
+	 */
+	private Reservations searchReservations(String departure, String arrival, String date) throws ParseException {
+		SearchFlight search = new SearchFlight(departure, arrival, date, mSeatPreference, isStopOver);
+		search.engine(mEngine);
+		List<Flights> matched = search.search();
+
+		Reservations reservations = new Reservations();
+		int reservationsIndex = 1;
+		for (Flights flights : matched) {
+			Reservation reservation = new Reservation(flights, mSeatPreference, reservationsIndex++);
+			reservations.add(reservation);
 		}
-		result.add(outboundReservations);
+		return reservations;
+	}
+
+	/**
+	 * This method will get the first k results in the order of the sort key,
+	 * it will check if customer wants return trip before search the return
+	 * flights
+	 * 
+	 * @param k
+	 *            number of results wanted for each direction
+	 * @param sortKey
+	 *            order of the results
+	 * @return list of reservations that contain at most k matched flights
+	 *         ordered by the sort key, it may be either one way trip or round
+	 *         way trip
+	 * @throws ParseException
+	 *             if the date parsing fails
+	 */
+	public List<Reservations> getTopResults(int k, SortKey sortKey) throws ParseException {
+		return getTopResults(k, sortKey, null);
+	}
+
+	/**
+	 * This method will get the first k results in the order of the sort key
+	 * and pass each of them to the listener as soon as it is found
+	 * 
+	 * @param k
+	 *            number of results wanted for each direction
+	 * @param sortKey
+	 *            order of the results
+	 * @param listener
+	 *            called with each result as soon as it is confirmed, may be
+	 *            null
+	 * @return list of reservations that contain at most k matched flights
+	 *         ordered by the sort key, it may be either one way trip or round
+	 *         way trip
+	 * @throws ParseException
+	 *             if the date parsing fails
+	 */
+	public List<Reservations> getTopResults(int k, SortKey sortKey, ResultListener listener)
+			throws ParseException {
+		List<Reservations> result = new ArrayList<Reservations>();
+		SearchFlight outbound = new SearchFlight(mDepartureAirportCode, mArrivalAirportCode, mDepartureDate,
+				mSeatPreference, isStopOver);
+		result.add(topReservations(outbound, k, sortKey, listener, false));
 
 		if (isRoundTrip) {
 			SearchFlight inbound = new SearchFlight(mArrivalAirportCode, mDepartureAirportCode, mReturnDate,
 					mSeatPreference, isStopOver);
-			List<Flights> inboundFlights = inbound.search();
-			Reservations inboundReservations = new Reservations();
-			int inboundReservationsIndex = 1;
-			for (Flights flights : inboundFlights) {
-				Reservation reservation = new Reservation(flights, mSeatPreference, inboundReservationsIndex++);
-				inboundReservations.add(reservation);
-			}
-			result.add(inboundReservations);
+			result.add(topReservations(inbound, k, sortKey, listener, true));
 		}
 		return result;
 	}
+
+	private Reservations topReservations(SearchFlight search, int k, SortKey sortKey, ResultListener listener,
+			boolean inbound) throws ParseException {
+		Reservations reservations = new Reservations();
+		search.searchTop(k, sortKey, flights -> {
+			Reservation reservation = new Reservation(flights, mSeatPreference, reservations.size() + 1);
+			reservations.add(reservation);
+			if (listener != null) {
+				listener.onResult(inbound, reservation);
+			}
+		});
+		return reservations;
+	}
 }
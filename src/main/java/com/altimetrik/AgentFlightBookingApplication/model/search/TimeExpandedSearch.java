@@ -0,0 +1,580 @@
+package com.altimetrik.AgentFlightBookingApplication.model.search;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+import com.altimetrik.AgentFlightBookingApplication.model.flight.Flight;
+import com.altimetrik.AgentFlightBookingApplication.model.flight.Flights;
+import com.altimetrik.AgentFlightBookingApplication.model.reservation.SortKey;
+import com.altimetrik.AgentFlightBookingApplication.utils.ServerTime;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Connection search over a time expanded view of the day schedules. Every
+ * schedule fetched by the search is indexed once by departure time, so the
+ * connections of an arrival are found by a binary search for its layover
+ * window instead of checking every departure of the airport. Partial
+ * itineraries share their prefix through parent links and are only copied
+ * into Flights once they reach the destination.
+ *
+ * The candidates of an arrival are taken from the same schedule the breadth
+ * first search reads and visited in schedule order, so both engines return
+ * identical itineraries in identical order.
+ *
+ * The pareto search keeps only itineraries no other itinerary beats on price,
+ * elapsed time and number of legs at once. Partial itineraries arriving at the
+ * same airport at the same minute have the same connections, so the ones
+ * dominated there are dropped before they are extended.
+ *
+ * The top k search extends the partial itinerary with the smallest sort key
+ * first. Extending an itinerary never lowers its key, so a complete itinerary
+ * taken from the queue is the next result in sort order and is handed out
+ * right away; the search stops after k of them.
+ */
+class TimeExpandedSearch {
+	private final SearchFlight mSearch;
+	private final HashMap<String, Timeline> mTimelines = new HashMap<String, Timeline>();
+	private long mSequence; // queue order of labels with equal keys
+
+	/**
+	 * Initializing constructor.
+	 *
+	 * @param search
+	 *            the search whose airports, date, seat preference and
+	 *            fetched schedules are used
+	 */
+	TimeExpandedSearch(SearchFlight search) {
+		mSearch = search;
+	}
+
+	/**
+	 * Find every itinerary to the arrival airport with at most maxStops stop
+	 * overs
+	 *
+	 * @param maxStops
+	 *            maximum number of stop overs
+	 * @return list of Flights from departure to arrival airport
+	 * @throws ParseException
+	 *             if the date parsing fails
+	 */
+	List<Flights> allItineraries(int maxStops) throws ParseException {
+		List<Label> arrived = new ArrayList<Label>();
+		List<Label> frontier = firstLegs(arrived, Long.MAX_VALUE);
+
+		for (int stop = 0; stop < maxStops && !frontier.isEmpty(); stop++) {
+			frontier = expand(frontier, arrived, stop == maxStops - 1, Long.MAX_VALUE);
+		}
+
+		List<Flights> result = new ArrayList<Flights>(arrived.size());
+		for (Label label : arrived) {
+			result.add(label.toFlights());
+		}
+		return result;
+	}
+
+	/**
+	 * Find the itinerary arriving first at the arrival airport with at most
+	 * maxStops stop overs. Partial itineraries arriving after the best one
+	 * found so far are dropped.
+	 *
+	 * @param maxStops
+	 *            maximum number of stop overs
+	 * @return the earliest arriving itinerary, null if there is none
+	 * @throws ParseException
+	 *             if the date parsing fails
+	 */
+	Flights earliestArrival(int maxStops) throws ParseException {
+		List<Label> arrived = new ArrayList<Label>();
+		List<Label> frontier = firstLegs(arrived, Long.MAX_VALUE);
+		Label best = earliest(arrived, null);
+
+		for (int stop = 0; stop < maxStops && !frontier.isEmpty(); stop++) {
+			long bound = best == null ? Long.MAX_VALUE : best.flight.getArrivalEpochMinute();
+			arrived.clear();
+			frontier = expand(frontier, arrived, stop == maxStops - 1, bound);
+			best = earliest(arrived, best);
+		}
+
+		return best == null ? null : best.toFlights();
+	}
+
+	/**
+	 * Find the itineraries to the arrival airport with at most maxStops stop
+	 * overs that are not dominated on price, elapsed minutes and number of
+	 * legs by another itinerary
+	 *
+	 * @param maxStops
+	 *            maximum number of stop overs
+	 * @return the pareto optimal itineraries in the order they were found
+	 * @throws ParseException
+	 *             if the date parsing fails
+	 */
+	List<Flights> paretoItineraries(int maxStops) throws ParseException {
+		List<Label> arrived = new ArrayList<Label>();
+		List<Label> firstLegs = firstLegs(arrived, Long.MAX_VALUE);
+
+		// non-dominated partial itineraries by airport and arrival minute
+		HashMap<String, List<Label>> bags = new HashMap<String, List<Label>>();
+		List<Label> destination = new ArrayList<Label>();
+		for (Label label : arrived) {
+			offer(destination, priced(label));
+		}
+		List<Label> frontier = new ArrayList<Label>();
+		for (Label label : firstLegs) {
+			Label priced = priced(label);
+			if (offer(bag(bags, priced), priced)) {
+				frontier.add(priced);
+			}
+		}
+
+		for (int stop = 0; stop < maxStops && !frontier.isEmpty(); stop++) {
+			List<String[]> airportDates = prefetch(frontier);
+			List<Label> next = new ArrayList<Label>();
+			boolean lastLevel = stop == maxStops - 1;
+
+			for (int i = 0; i < frontier.size(); i++) {
+				Label label = frontier.get(i);
+				if (label.dominated || isBeaten(destination, label)) {
+					continue;
+				}
+
+				long arrival = label.flight.getArrivalEpochMinute();
+				Timeline timeline = timeline(airportDates.get(i)[0], airportDates.get(i)[1]);
+				for (int position : timeline.connections(arrival + (long) SearchFlight.MIN_LAYOVER_INMINUTES,
+						arrival + (long) SearchFlight.MAX_LAYOVER_INMINUTES)) {
+					Flight flight = timeline.flights[position];
+					Label extended = new Label(label, flight, price(flight));
+
+					if (flight.getArrivalAirport().equals(mSearch.arrivalAirportCode())) {
+						offer(destination, extended);
+					} else if (!lastLevel && !isBeaten(destination, extended)
+							&& offer(bag(bags, extended), extended)) {
+						next.add(extended);
+					}
+				}
+			}
+			frontier = next;
+		}
+
+		List<Flights> result = new ArrayList<Flights>();
+		for (Label label : destination) {
+			result.add(label.toFlights());
+		}
+		return result;
+	}
+
+	/**
+	 * Find the k itineraries to the arrival airport with at most maxStops stop
+	 * overs that come first in the order of the sort key
+	 *
+	 * @param maxStops
+	 *            maximum number of stop overs
+	 * @param k
+	 *            number of itineraries wanted
+	 * @param sortKey
+	 *            order of the itineraries
+	 * @param listener
+	 *            called with each itinerary as soon as it is confirmed, may be
+	 *            null
+	 * @return at most k itineraries ordered by the sort key
+	 * @throws ParseException
+	 *             if the date parsing fails
+	 */
+	List<Flights> topItineraries(int maxStops, int k, SortKey sortKey, Consumer<Flights> listener)
+			throws ParseException {
+		List<Flights> result = new ArrayList<Flights>();
+		if (k <= 0) {
+			return result;
+		}
+
+		PriorityQueue<Ranked> queue = new PriorityQueue<Ranked>();
+		// keys of the k best complete itineraries seen, largest first
+		PriorityQueue<Long> best = new PriorityQueue<Long>(k, Collections.reverseOrder());
+		String destination = mSearch.arrivalAirportCode();
+
+		List<Label> start = new ArrayList<Label>();
+		List<Label> frontier = firstLegs(start, Long.MAX_VALUE);
+		prefetch(frontier);
+		start.addAll(frontier);
+		for (Label label : start) {
+			Label ranked = sortKey == SortKey.PRICE ? priced(label) : label;
+			push(queue, best, k, ranked, key(ranked, sortKey), ranked.flight.getArrivalAirport().equals(destination));
+		}
+
+		while (!queue.isEmpty() && result.size() < k) {
+			Label label = queue.poll().label;
+
+			if (label.flight.getArrivalAirport().equals(destination)) {
+				Flights flights = label.toFlights();
+				result.add(flights);
+				if (listener != null) {
+					listener.accept(flights);
+				}
+				continue;
+			}
+			if (label.legs > maxStops) {
+				continue;
+			}
+
+			long arrival = label.flight.getArrivalEpochMinute();
+			Timeline timeline = timeline(label.flight.getArrivalAirport(), ServerTime.formatDate(arrival));
+			for (int position : timeline.connections(arrival + (long) SearchFlight.MIN_LAYOVER_INMINUTES,
+					arrival + (long) SearchFlight.MAX_LAYOVER_INMINUTES)) {
+				Flight flight = timeline.flights[position];
+				Label extended = new Label(label, flight, sortKey == SortKey.PRICE ? price(flight) : 0);
+				boolean complete = flight.getArrivalAirport().equals(destination);
+
+				if (complete || extended.legs <= maxStops) {
+					push(queue, best, k, extended, key(extended, sortKey), complete);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Queue a label unless k complete itineraries with smaller keys are known
+	 */
+	private void push(PriorityQueue<Ranked> queue, PriorityQueue<Long> best, int k, Label label, long key,
+			boolean complete) {
+		if (best.size() == k && key > best.peek()) {
+			return;
+		}
+		queue.add(new Ranked(label, key, mSequence++));
+
+		if (complete) {
+			best.add(key);
+			if (best.size() > k) {
+				best.poll();
+			}
+		}
+	}
+
+	/**
+	 * get the sort key of a label, a lower bound of the key of every
+	 * itinerary extending it
+	 */
+	private static long key(Label label, SortKey sortKey) {
+		switch (sortKey) {
+		case PRICE:
+			return label.price;
+		case DURATION:
+			return label.elapsed();
+		case DEPARTURE:
+			return label.departure;
+		default:
+			return label.flight.getArrivalEpochMinute();
+		}
+	}
+
+	/**
+	 * Add a label to a set of non-dominated labels unless a label of the set
+	 * dominates it. Labels of the set it dominates are removed and marked.
+	 *
+	 * @return true if the label was added
+	 */
+	private static boolean offer(List<Label> bag, Label label) {
+		for (Label other : bag) {
+			if (other.dominates(label)) {
+				return false;
+			}
+		}
+
+		Iterator<Label> others = bag.iterator();
+		while (others.hasNext()) {
+			Label other = others.next();
+			if (label.dominates(other)) {
+				other.dominated = true;
+				others.remove();
+			}
+		}
+		bag.add(label);
+		return true;
+	}
+
+	/**
+	 * A partial itinerary is beaten if a complete itinerary is at least as
+	 * good on every criterion, every extension of it then has more legs and is
+	 * dominated
+	 */
+	private static boolean isBeaten(List<Label> destination, Label label) {
+		for (Label other : destination) {
+			if (other.price <= label.price && other.elapsed() <= label.elapsed() && other.legs <= label.legs) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static List<Label> bag(HashMap<String, List<Label>> bags, Label label) {
+		String key = label.flight.getArrivalAirport() + "_" + label.flight.getArrivalEpochMinute();
+		List<Label> bag = bags.get(key);
+		if (bag == null) {
+			bag = new ArrayList<Label>(2);
+			bags.put(key, bag);
+		}
+		return bag;
+	}
+
+	private Label priced(Label label) {
+		return new Label(label.parent, label.flight, price(label.flight));
+	}
+
+	/**
+	 * get the price of a flight in the preferred seat class in cents
+	 */
+	private long price(Flight flight) {
+		return mSearch.isCoach() ? flight.getCoachPriceCents() : flight.getFirstClassPriceCents();
+	}
+
+	private static Label earliest(List<Label> labels, Label best) {
+		for (Label label : labels) {
+			if (best == null || label.flight.getArrivalEpochMinute() < best.flight.getArrivalEpochMinute()) {
+				best = label;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Build the first legs from the departure airport on the departure date
+	 */
+	private List<Label> firstLegs(List<Label> arrived, long arrivalBound) throws ParseException {
+		List<Label> frontier = new ArrayList<Label>();
+		Flights flights = mSearch.flightsFrom(mSearch.departureAirportCode(), mSearch.departureDate());
+
+		for (Flight flight : flights) {
+			if (!mSearch.isAvailableSeat(flight)) {
+				continue;
+			}
+			if (!mSearch.isLocalTimeSameDay(flight)) {
+				continue;
+			}
+			if (flight.getArrivalEpochMinute() >= arrivalBound) {
+				continue;
+			}
+
+			Label label = new Label(null, flight);
+			if (flight.getArrivalAirport().equals(mSearch.arrivalAirportCode())) {
+				arrived.add(label);
+			} else {
+				frontier.add(label);
+			}
+		}
+		return frontier;
+	}
+
+	/**
+	 * Extend every partial itinerary of a level by the connections inside its
+	 * layover window
+	 *
+	 * @param frontier
+	 *            partial itineraries of the level
+	 * @param arrived
+	 *            collects the itineraries reaching the arrival airport
+	 * @param lastLevel
+	 *            true if the extended itineraries can not be extended again
+	 * @param arrivalBound
+	 *            connections arriving at or after this minute are skipped
+	 * @return partial itineraries of the next level
+	 */
+	private List<Label> expand(List<Label> frontier, List<Label> arrived, boolean lastLevel, long arrivalBound) {
+		List<String[]> airportDates = prefetch(frontier);
+
+		List<Label> next = new ArrayList<Label>();
+		String destination = mSearch.arrivalAirportCode();
+		for (int i = 0; i < frontier.size(); i++) {
+			Label label = frontier.get(i);
+			long arrival = label.flight.getArrivalEpochMinute();
+			if (arrival >= arrivalBound) {
+				continue;
+			}
+
+			Timeline timeline = timeline(airportDates.get(i)[0], airportDates.get(i)[1]);
+			for (int position : timeline.connections(arrival + (long) SearchFlight.MIN_LAYOVER_INMINUTES,
+					arrival + (long) SearchFlight.MAX_LAYOVER_INMINUTES)) {
+				Flight flight = timeline.flights[position];
+				if (flight.getArrivalEpochMinute() >= arrivalBound) {
+					continue;
+				}
+
+				if (flight.getArrivalAirport().equals(destination)) {
+					arrived.add(new Label(label, flight));
+				} else if (!lastLevel) {
+					next.add(new Label(label, flight));
+				}
+			}
+		}
+		return next;
+	}
+
+	/**
+	 * Fetch the schedules a level continues from at once
+	 *
+	 * @return airport code and date each label continues from
+	 */
+	private List<String[]> prefetch(List<Label> frontier) {
+		List<String[]> airportDates = new ArrayList<String[]>(frontier.size());
+		for (Label label : frontier) {
+			airportDates.add(new String[] { label.flight.getArrivalAirport(),
+					ServerTime.formatDate(label.flight.getArrivalEpochMinute()) });
+		}
+		mSearch.prefetchFlights(airportDates);
+		return airportDates;
+	}
+
+	/**
+	 * get the indexed schedule of an airport and date
+	 */
+	private Timeline timeline(String airport, String date) {
+		String key = airport + "_" + date;
+		Timeline timeline = mTimelines.get(key);
+		if (timeline == null) {
+			timeline = new Timeline(mSearch.flightsFrom(airport, date), mSearch);
+			mTimelines.put(key, timeline);
+		}
+		return timeline;
+	}
+
+	/**
+	 * The departures of one schedule indexed by departure time. Seat
+	 * availability is checked once per flight when the index is built.
+	 */
+	private static final class Timeline {
+		private final Flight[] flights;
+		private final long[] departures; // departure minutes in ascending order
+		private final int[] positions; // schedule position of each departure
+
+		Timeline(Flights schedule, SearchFlight search) {
+			flights = schedule.toArray(new Flight[schedule.size()]);
+
+			// sort departure minute and schedule position packed in one long
+			long[] keys = new long[flights.length];
+			int available = 0;
+			for (int i = 0; i < flights.length; i++) {
+				if (search.isAvailableSeat(flights[i])) {
+					keys[available++] = (flights[i].getDepartureEpochMinute() << 20) | i;
+				}
+			}
+			keys = Arrays.copyOf(keys, available);
+			Arrays.sort(keys);
+
+			departures = new long[available];
+			positions = new int[available];
+			for (int i = 0; i < available; i++) {
+				departures[i] = keys[i] >> 20;
+				positions[i] = (int) (keys[i] & 0xFFFFF);
+			}
+		}
+
+		/**
+		 * @return schedule positions of the flights departing between from
+		 *         and to, both included, in schedule order
+		 */
+		int[] connections(long from, long to) {
+			int first = lowerBound(from);
+			int last = lowerBound(to + 1);
+			int[] result = Arrays.copyOfRange(positions, first, last);
+			Arrays.sort(result);
+			return result;
+		}
+
+		private int lowerBound(long minute) {
+			int low = 0;
+			int high = departures.length;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (departures[middle] < minute) {
+					low = middle + 1;
+				} else {
+					high = middle;
+				}
+			}
+			return low;
+		}
+	}
+
+	/**
+	 * A queued label with its sort key, labels with equal keys leave the queue
+	 * in the order they were queued
+	 */
+	private static final class Ranked implements Comparable<Ranked> {
+		private final Label label;
+		private final long key;
+		private final long sequence;
+
+		Ranked(Label label, long key, long sequence) {
+			this.label = label;
+			this.key = key;
+			this.sequence = sequence;
+		}
+
+		public int compareTo(Ranked other) {
+			int result = Long.compare(key, other.key);
+			return result != 0 ? result : Long.compare(sequence, other.sequence);
+		}
+	}
+
+	/**
+	 * A partial itinerary: its last flight and the itinerary it extends
+	 */
+	private static final class Label {
+		private final Label parent;
+		private final Flight flight;
+		private final int legs;
+		private final long departure; // departure minute of the first flight
+		private final long price; // cents, only tracked by the pareto search
+		private boolean dominated; // set once a better label replaced it
+
+		Label(Label parent, Flight flight) {
+			this(parent, flight, 0);
+		}
+
+		Label(Label parent, Flight flight, long flightPrice) {
+			this.parent = parent;
+			this.flight = flight;
+			this.legs = parent == null ? 1 : parent.legs + 1;
+			this.departure = parent == null ? flight.getDepartureEpochMinute() : parent.departure;
+			this.price = parent == null ? flightPrice : parent.price + flightPrice;
+		}
+
+		long elapsed() {
+			return flight.getArrivalEpochMinute() - departure;
+		}
+
+		/**
+		 * @return true if this label is at least as good on price, elapsed
+		 *         minutes and legs and better on one of them
+		 */
+		boolean dominates(Label other) {
+			long elapsed = elapsed();
+			long otherElapsed = other.elapsed();
+			return price <= other.price && elapsed <= otherElapsed && legs <= other.legs
+					&& (price < other.price || elapsed < otherElapsed || legs < other.legs);
+		}
+
+		Flights toFlights() {
+			Flight[] path = new Flight[legs];
+			Label label = this;
+			for (int i = legs - 1; i >= 0; i--) {
+				path[i] = label.flight;
+				label = label.parent;
+			}
+
+			Flights flights = new Flights();
+			flights.addAll(Arrays.asList(path));
+			return flights;
+		}
+	}
+}
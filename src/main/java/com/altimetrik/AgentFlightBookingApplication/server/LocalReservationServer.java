@@ -0,0 +1,383 @@
+package com.altimetrik.AgentFlightBookingApplication.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.altimetrik.AgentFlightBookingApplication.dao.Dao;
+import com.altimetrik.AgentFlightBookingApplication.utils.WorkerPools;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Reservation server on the JDK HttpServer speaking the protocol of the
+ * classroom server, so the application can be run, tested and loaded without
+ * reaching it. GET requests with action=list return the airports, airplanes
+ * or departing flights of a Schedule; POST requests lock and unlock the
+ * database and buy tickets while the lock is held.
+ *
+ * A lock not released is dropped after the lock timeout. Every request can be
+ * delayed by a fixed latency plus a random jitter to mimic a remote server.
+ *
+ * The defaults are set by the system properties local.server.latency.ms,
+ * local.server.jitter.ms, local.server.lock.timeout.ms and
+ * local.server.threads. Point the application to a running server with
+ * ServerInterface.setUrlBase(url()) or the system property server.url.
+ */
+public final class LocalReservationServer {
+	private static final String PATH = "/CS509.server/ReservationSystem";
+
+	private final Schedule mSchedule;
+	private final long mLockTimeoutMillis;
+	private final int mThreads;
+	private volatile long mLatencyMillis;
+	private volatile long mJitterMillis;
+
+	// team holding the database lock, null when unlocked
+	private String mLockHolder;
+	private long mLockExpires; // System.nanoTime() the lock is dropped at
+
+	private final AtomicLong mRequests = new AtomicLong();
+	private final AtomicLong mTicketsSold = new AtomicLong();
+	private final AtomicLong mRejected = new AtomicLong();
+
+	private HttpServer mServer;
+	private ExecutorService mExecutor;
+
+	/**
+	 * Create a server configured by system properties
+	 *
+	 * @param schedule
+	 *            the flights to serve
+	 */
+	public LocalReservationServer(Schedule schedule) {
+		this(schedule, Long.getLong("local.server.latency.ms", 0), Long.getLong("local.server.jitter.ms", 0),
+				Long.getLong("local.server.lock.timeout.ms", 120000), Integer.getInteger("local.server.threads", 16));
+	}
+
+	/**
+	 * Initializing constructor.
+	 *
+	 * @param schedule
+	 *            the flights to serve
+	 * @param latencyMillis
+	 *            delay added to every request
+	 * @param jitterMillis
+	 *            upper bound of a random delay added on top of latencyMillis
+	 * @param lockTimeoutMillis
+	 *            time after which a lock not released is dropped
+	 * @param threads
+	 *            number of requests handled at once
+	 */
+	public LocalReservationServer(Schedule schedule, long latencyMillis, long jitterMillis, long lockTimeoutMillis,
+			int threads) {
+		if (threads <= 0)
+			throw new IllegalArgumentException(String.valueOf(threads));
+
+		mSchedule = schedule;
+		mLatencyMillis = latencyMillis;
+		mJitterMillis = jitterMillis;
+		mLockTimeoutMillis = lockTimeoutMillis;
+		mThreads = threads;
+	}
+
+	/**
+	 * Start serving on the loopback address
+	 *
+	 * @param port
+	 *            the port to listen on, 0 for any free port
+	 * @return this server
+	 * @throws IOException
+	 *             if the port cannot be bound
+	 */
+	public synchronized LocalReservationServer start(int port) throws IOException {
+		if (mServer != null)
+			throw new IllegalStateException("already started");
+
+		mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+		mExecutor = Executors.newFixedThreadPool(mThreads, WorkerPools.daemonThreads("local-server"));
+		mServer.setExecutor(mExecutor);
+		mServer.createContext(PATH, this::handle);
+		mServer.start();
+		return this;
+	}
+
+	/**
+	 * Stop serving, requests in progress are given a second to finish
+	 */
+	public synchronized void stop() {
+		if (mServer == null) {
+			return;
+		}
+		mServer.stop(1);
+		mExecutor.shutdownNow();
+		mServer = null;
+		mExecutor = null;
+	}
+
+	/**
+	 * @return the url to pass to ServerInterface.setUrlBase
+	 */
+	public synchronized String url() {
+		if (mServer == null)
+			throw new IllegalStateException("not started");
+		return "http://127.0.0.1:" + mServer.getAddress().getPort() + PATH;
+	}
+
+	/**
+	 * Change the delay added to the following requests
+	 *
+	 * @param latencyMillis
+	 *            delay added to every request
+	 * @param jitterMillis
+	 *            upper bound of a random delay added on top of latencyMillis
+	 */
+	public void latency(long latencyMillis, long jitterMillis) {
+		mLatencyMillis = latencyMillis;
+		mJitterMillis = jitterMillis;
+	}
+
+	/**
+	 * @return number of requests received
+	 */
+	public long requests() {
+		return mRequests.get();
+	}
+
+	/**
+	 * @return number of tickets sold, one per flight of a purchase
+	 */
+	public long ticketsSold() {
+		return mTicketsSold.get();
+	}
+
+	/**
+	 * @return number of lock and purchase requests refused
+	 */
+	public long rejected() {
+		return mRejected.get();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		mRequests.incrementAndGet();
+		try {
+			delay();
+
+			if ("GET".equals(exchange.getRequestMethod())) {
+				list(exchange, parameters(exchange.getRequestURI().getRawQuery()));
+			} else if ("POST".equals(exchange.getRequestMethod())) {
+				update(exchange, parameters(readBody(exchange.getRequestBody())));
+			} else {
+				respond(exchange, 405, "text/plain", "method not allowed");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			respond(exchange, 503, "text/plain", "server stopping");
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			respond(exchange, 500, "text/plain", String.valueOf(e));
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void delay() throws InterruptedException {
+		long latency = mLatencyMillis;
+		long jitter = mJitterMillis;
+		if (jitter > 0) {
+			latency += ThreadLocalRandom.current().nextLong(jitter + 1);
+		}
+		if (latency > 0) {
+			TimeUnit.MILLISECONDS.sleep(latency);
+		}
+	}
+
+	/**
+	 * answer action=list for airports, airplanes and departing flights
+	 */
+	private void list(HttpExchange exchange, Map<String, String> query) throws IOException {
+		if (!"list".equals(query.get("action"))) {
+			respond(exchange, 400, "text/plain", "unknown action");
+			return;
+		}
+
+		String type = query.get("list_type");
+		if ("airports".equals(type)) {
+			respond(exchange, 200, "text/xml", ServerXml.airports(mSchedule.airports()));
+		} else if ("airplanes".equals(type)) {
+			respond(exchange, 200, "text/xml", ServerXml.airplanes(mSchedule.airplanes()));
+		} else if ("departing".equals(type) && query.containsKey("airport") && query.containsKey("day")) {
+			respond(exchange, 200, "text/xml",
+					ServerXml.flights(mSchedule.departing(query.get("airport"), query.get("day"))));
+		} else {
+			respond(exchange, 400, "text/plain", "unknown list_type");
+		}
+	}
+
+	/**
+	 * answer lockDB, unlockDB and buyTickets
+	 */
+	private void update(HttpExchange exchange, Map<String, String> form) throws IOException {
+		String team = form.get("team");
+		String action = form.get("action");
+
+		if ("lockDB".equals(action)) {
+			if (lock(team)) {
+				respond(exchange, 200, "text/plain", "Database locked by " + team);
+			} else {
+				mRejected.incrementAndGet();
+				respond(exchange, 409, "text/plain", "Database locked by another team");
+			}
+		} else if ("unlockDB".equals(action)) {
+			if (unlock(team)) {
+				respond(exchange, 200, "text/plain", "Database unlocked");
+			} else {
+				mRejected.incrementAndGet();
+				respond(exchange, 409, "text/plain", "Database locked by another team");
+			}
+		} else if ("buyTickets".equals(action)) {
+			buyTickets(exchange, team, form.get("flightData"));
+		} else {
+			respond(exchange, 400, "text/plain", "unknown action");
+		}
+	}
+
+	private void buyTickets(HttpExchange exchange, String team, String flightData) throws IOException {
+		if (!holdsLock(team)) {
+			mRejected.incrementAndGet();
+			respond(exchange, 412, "text/plain", "Database not locked by " + team);
+			return;
+		}
+
+		List<String[]> legs = Dao.parseFlightData(flightData);
+		if (legs == null || legs.isEmpty()) {
+			mRejected.incrementAndGet();
+			respond(exchange, 400, "text/plain", "bad flightData");
+			return;
+		}
+
+		int[] numbers = new int[legs.size()];
+		String[] seating = new String[legs.size()];
+		for (int i = 0; i < numbers.length; i++) {
+			numbers[i] = Integer.parseInt(legs.get(i)[0]);
+			seating[i] = legs.get(i)[1];
+		}
+
+		if (mSchedule.buyTickets(numbers, seating)) {
+			mTicketsSold.addAndGet(numbers.length);
+			respond(exchange, 200, "text/plain", "Tickets purchased");
+		} else {
+			mRejected.incrementAndGet();
+			respond(exchange, 409, "text/plain", "Seats not available");
+		}
+	}
+
+	private synchronized boolean lock(String team) {
+		if (team == null) {
+			return false;
+		}
+		if (mLockHolder != null && !mLockHolder.equals(team) && System.nanoTime() - mLockExpires < 0) {
+			return false;
+		}
+		mLockHolder = team;
+		mLockExpires = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(mLockTimeoutMillis);
+		return true;
+	}
+
+	private synchronized boolean unlock(String team) {
+		if (mLockHolder != null && !mLockHolder.equals(team) && System.nanoTime() - mLockExpires < 0) {
+			return false;
+		}
+		mLockHolder = null;
+		return true;
+	}
+
+	private synchronized boolean holdsLock(String team) {
+		return team != null && team.equals(mLockHolder) && System.nanoTime() - mLockExpires < 0;
+	}
+
+	private static Map<String, String> parameters(String encoded) {
+		Map<String, String> parameters = new HashMap<String, String>();
+		if (encoded == null) {
+			return parameters;
+		}
+
+		for (String parameter : encoded.split("&")) {
+			int equals = parameter.indexOf('=');
+			if (equals > 0) {
+				parameters.put(parameter.substring(0, equals), decode(parameter.substring(equals + 1)));
+			}
+		}
+		return parameters;
+	}
+
+	/**
+	 * the client does not encode the flightData XML, so a value that is not
+	 * valid form encoding is taken as it is
+	 */
+	private static String decode(String value) {
+		try {
+			return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+		} catch (IllegalArgumentException | IOException e) {
+			return value;
+		}
+	}
+
+	private static String readBody(InputStream body) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = body.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private static void respond(HttpExchange exchange, int status, String contentType, String body)
+			throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=UTF-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Run a server on a generated network, configured by the schedule.* system
+	 * properties, until the process is stopped
+	 *
+	 * @param args
+	 *            optional port, 8181 by default
+	 * @throws IOException
+	 *             if the port cannot be bound
+	 * @throws InterruptedException
+	 *             if the main thread is interrupted
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 8181;
+		LocalReservationServer server = new LocalReservationServer(new ScheduleGenerator()).start(port);
+		System.out.println("Reservation server listening on " + server.url());
+
+		// the server threads are daemon threads
+		Thread.currentThread().join();
+	}
+}
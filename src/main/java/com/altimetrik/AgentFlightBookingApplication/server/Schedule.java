@@ -0,0 +1,53 @@
+package com.altimetrik.AgentFlightBookingApplication.server;
+
+import java.util.List;
+
+import com.altimetrik.AgentFlightBookingApplication.model.airplane.Airplanes;
+import com.altimetrik.AgentFlightBookingApplication.model.airport.Airport;
+import com.altimetrik.AgentFlightBookingApplication.model.flight.Flights;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * The data a LocalReservationServer serves and books seats on. Implementations
+ * are called from several server threads at once.
+ */
+public interface Schedule {
+
+	/**
+	 * @return all airports
+	 */
+	List<Airport> airports();
+
+	/**
+	 * @return all airplane models
+	 */
+	Airplanes airplanes();
+
+	/**
+	 * get the flights departing an airport on a date, with their current
+	 * bookings
+	 *
+	 * @param airport
+	 *            code of the departure airport
+	 * @param date
+	 *            departure date in GMT, yyyy_mm_dd format
+	 * @return [possibly empty] collection of Flights
+	 */
+	Flights departing(String airport, String date);
+
+	/**
+	 * Book one seat on each flight, either all of them or none
+	 *
+	 * @param numbers
+	 *            the flight numbers
+	 * @param seating
+	 *            "Coach" or "FirstClass" for each flight
+	 * @return true if every seat was booked, false if a flight is unknown or
+	 *         full
+	 */
+	boolean buyTickets(int[] numbers, String[] seating);
+}
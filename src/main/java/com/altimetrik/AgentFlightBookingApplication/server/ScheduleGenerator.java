@@ -0,0 +1,485 @@
+package com.altimetrik.AgentFlightBookingApplication.server;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.altimetrik.AgentFlightBookingApplication.dao.ReferenceDataSnapshot;
+import com.altimetrik.AgentFlightBookingApplication.model.airplane.Airplane;
+import com.altimetrik.AgentFlightBookingApplication.model.airplane.Airplanes;
+import com.altimetrik.AgentFlightBookingApplication.model.airport.Airport;
+import com.altimetrik.AgentFlightBookingApplication.model.flight.Flight;
+import com.altimetrik.AgentFlightBookingApplication.model.flight.FlightStore;
+import com.altimetrik.AgentFlightBookingApplication.model.flight.Flights;
+import com.altimetrik.AgentFlightBookingApplication.utils.Prices;
+import com.altimetrik.AgentFlightBookingApplication.utils.ServerTime;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Made up flight network of any size, for load and scale testing. The first
+ * airports are the ones Airport.quickTimeZone knows, further airports get
+ * generated codes and a US time zone. A share of the airports are hubs: hubs
+ * fly to every airport, the other airports only fly to hubs. Every airport has
+ * the same number of departures a day, their seats are booked around the load
+ * factor. Flight times follow the distance between made up airport locations,
+ * so a route always takes the same time.
+ *
+ * The same parameters always give the same network. The flights of an airport
+ * and day are generated when they are first asked for, so a
+ * LocalReservationServer can serve a network far larger than the heap, and
+ * bookings are kept on the flights generated. Flight numbers encode the day,
+ * airport and position.
+ *
+ * The network can be written as the XML files of the reservation server, as a
+ * reference data snapshot and as a FlightStore. The defaults are set by the
+ * system properties schedule.airports, schedule.hub.density,
+ * schedule.flights.per.day, schedule.days, schedule.first.date,
+ * schedule.load.factor and schedule.seed.
+ */
+public final class ScheduleGenerator implements Schedule {
+	private static final String[] KNOWN_AIRPORTS = { "ANC", "ATL", "AUS", "BDL", "BNA", "BOS", "BWI", "CLE", "CLT",
+			"CMH", "CVG", "DCA", "DEN", "DFW", "DTW", "EWR", "FLL", "HNL", "HOU", "IAD", "IAH", "IND", "JFK", "LAS",
+			"LAX", "LGA", "MCI", "MCO", "MDW", "MEM", "MIA", "MSP", "MSY", "OAK", "ONT", "ORD", "PDX", "PHL", "PHX",
+			"PIT", "RDU", "RSW", "SAN", "SAT", "SEA", "SFO", "SJC", "SLC", "SMF", "SNA", "STL", "TPA" };
+
+	private static final String[] TIME_ZONES = { "America/New_York", "America/Chicago", "America/Denver",
+			"America/Phoenix", "America/Los_Angeles", "America/Anchorage", "Pacific/Honolulu" };
+
+	// manufacturer, model, first class seats, coach seats
+	private static final String[][] AIRPLANES = { { "Airbus", "A310", "24", "168" },
+			{ "Airbus", "A320", "12", "138" }, { "Airbus", "A330", "30", "263" }, { "Airbus", "A340", "38", "257" },
+			{ "Airbus", "A380", "120", "400" }, { "Boeing", "717", "12", "94" }, { "Boeing", "737", "16", "126" },
+			{ "Boeing", "747", "60", "316" }, { "Boeing", "757", "20", "158" }, { "Boeing", "767", "30", "189" },
+			{ "Boeing", "777", "45", "295" }, { "Boeing", "787", "28", "214" } };
+
+	private static final ZoneId GMT = ZoneId.of("GMT");
+	private static final double KM_PER_MINUTE = 13.5; // cruising speed
+	private static final int TAXI_MINUTES = 30;
+
+	private final int mFlightsPerDay;
+	private final int mDays;
+	private final long mFirstDay;
+	private final double mLoadFactor;
+	private final long mSeed;
+
+	private final List<Airport> mAirports = new ArrayList<Airport>();
+	private final Map<String, Integer> mAirportIndex = new HashMap<String, Integer>();
+	private final double[] mLatitude;
+	private final double[] mLongitude;
+	private final int[] mHubs;
+	private final boolean[] mIsHub;
+	private final Airplanes mAirplanes = new Airplanes();
+
+	// flights generated for the server, by day * airports + airport
+	private final Map<Long, Flights> mDeparting = new ConcurrentHashMap<Long, Flights>();
+
+	/**
+	 * Create a generator configured by system properties, by default the 52
+	 * airports of the classroom server with 100 departures a day in May 2017
+	 */
+	public ScheduleGenerator() {
+		this(Integer.getInteger("schedule.airports", KNOWN_AIRPORTS.length),
+				Double.parseDouble(System.getProperty("schedule.hub.density", "0.2")),
+				Integer.getInteger("schedule.flights.per.day", 100), Integer.getInteger("schedule.days", 31),
+				System.getProperty("schedule.first.date", "2017_05_01"),
+				Double.parseDouble(System.getProperty("schedule.load.factor", "0.6")),
+				Long.getLong("schedule.seed", 509));
+	}
+
+	/**
+	 * Initializing constructor.
+	 *
+	 * @param airports
+	 *            number of airports
+	 * @param hubDensity
+	 *            share of the airports that are hubs, at least one unless 0;
+	 *            0 or all airports for a network where every airport flies
+	 *            to every other
+	 * @param flightsPerDay
+	 *            departures of every airport every day
+	 * @param days
+	 *            number of days with flights
+	 * @param firstDate
+	 *            first day with flights, in yyyy_mm_dd format
+	 * @param loadFactor
+	 *            average share of the seats already booked, from 0 to 1
+	 * @param seed
+	 *            seed of the made up data
+	 */
+	public ScheduleGenerator(int airports, double hubDensity, int flightsPerDay, int days, String firstDate,
+			double loadFactor, long seed) {
+		if (airports < 2)
+			throw new IllegalArgumentException("airports " + airports);
+		if (hubDensity < 0 || hubDensity > 1)
+			throw new IllegalArgumentException("hubDensity " + hubDensity);
+		if (flightsPerDay <= 0 || days <= 0 || (long) airports * flightsPerDay * days >= Integer.MAX_VALUE)
+			throw new IllegalArgumentException(airports + " airports, " + flightsPerDay + " flights a day, " + days
+					+ " days do not fit in flight numbers");
+		if (loadFactor < 0 || loadFactor > 1)
+			throw new IllegalArgumentException("loadFactor " + loadFactor);
+
+		mFlightsPerDay = flightsPerDay;
+		mDays = days;
+		mFirstDay = ServerTime.toEpochDay(firstDate);
+		mLoadFactor = loadFactor;
+		mSeed = seed;
+
+		Random random = new Random(seed);
+		mLatitude = new double[airports];
+		mLongitude = new double[airports];
+		Set<String> known = new HashSet<String>(Arrays.asList(KNOWN_AIRPORTS));
+		int generated = 0;
+		for (int i = 0; i < airports; i++) {
+			Airport airport;
+			if (i < KNOWN_AIRPORTS.length) {
+				airport = new Airport(KNOWN_AIRPORTS[i] + " International", KNOWN_AIRPORTS[i]);
+				airport.timeZone(airport.quickTimeZone());
+			} else {
+				String code;
+				do {
+					code = code(generated++);
+				} while (known.contains(code));
+				airport = new Airport(code + " Regional", code);
+				airport.timeZone(TIME_ZONES[random.nextInt(TIME_ZONES.length)]);
+			}
+			mAirports.add(airport);
+			mAirportIndex.put(airport.code(), i);
+
+			// somewhere in the continental United States
+			mLatitude[i] = 25 + random.nextDouble() * 24;
+			mLongitude[i] = -124 + random.nextDouble() * 57;
+		}
+
+		int hubCount = (int) Math.round(airports * hubDensity);
+		List<Integer> order = new ArrayList<Integer>(airports);
+		for (int i = 0; i < airports; i++) {
+			order.add(i);
+		}
+		Collections.shuffle(order, random);
+		if (hubDensity > 0) {
+			hubCount = Math.max(1, hubCount);
+		}
+		// hubs at every airport are no hubs, every airport flies anywhere
+		mHubs = new int[hubCount >= airports ? 0 : hubCount];
+		mIsHub = new boolean[airports];
+		for (int i = 0; i < mHubs.length; i++) {
+			mHubs[i] = order.get(i);
+			mIsHub[mHubs[i]] = true;
+		}
+		Arrays.sort(mHubs);
+
+		for (String[] model : AIRPLANES) {
+			Airplane airplane = new Airplane();
+			airplane.setManufacturer(model[0]);
+			airplane.setModel(model[1]);
+			airplane.setFirstClassSeats(Integer.parseInt(model[2]));
+			airplane.setCoachSeats(Integer.parseInt(model[3]));
+			mAirplanes.add(airplane);
+		}
+	}
+
+	public List<Airport> airports() {
+		return Collections.unmodifiableList(mAirports);
+	}
+
+	public Airplanes airplanes() {
+		return mAirplanes;
+	}
+
+	public Flights departing(String airport, String date) {
+		Integer index = mAirportIndex.get(airport);
+		long day;
+		try {
+			day = ServerTime.toEpochDay(date) - mFirstDay;
+		} catch (RuntimeException e) {
+			return new Flights();
+		}
+		if (index == null || day < 0 || day >= mDays) {
+			return new Flights();
+		}
+
+		final int departure = index;
+		final int dayIndex = (int) day;
+		return mDeparting.computeIfAbsent(day * mAirports.size() + departure, key -> generate(departure, dayIndex));
+	}
+
+	public synchronized boolean buyTickets(int[] numbers, String[] seating) {
+		Flight[] flights = new Flight[numbers.length];
+		for (int i = 0; i < numbers.length; i++) {
+			flights[i] = flight(numbers[i]);
+			if (flights[i] == null) {
+				return false;
+			}
+		}
+
+		// a purchase may hold a flight more than once, so seats are taken one
+		// by one and given back when one is missing
+		for (int i = 0; i < numbers.length; i++) {
+			boolean coach = "Coach".equals(seating[i]);
+			if (!hasFreeSeat(flights[i], coach)) {
+				for (int j = 0; j < i; j++) {
+					book(flights[j], "Coach".equals(seating[j]), -1);
+				}
+				return false;
+			}
+			book(flights[i], coach, 1);
+		}
+		return true;
+	}
+
+	/**
+	 * @return number of flights in the whole network
+	 */
+	public int size() {
+		return mAirports.size() * mFlightsPerDay * mDays;
+	}
+
+	/**
+	 * @param day
+	 *            day of the network, from 0
+	 * @return the date of the day in yyyy_mm_dd format
+	 */
+	public String date(int day) {
+		return ServerTime.formatDate((mFirstDay + day) * ServerTime.MINUTES_PER_DAY);
+	}
+
+	/**
+	 * Write the network as the XML of the reservation server: airports.xml,
+	 * airplanes.xml and flights/CODE_yyyy_mm_dd.xml for every airport and day.
+	 * Flights already served hold the seats booked on them.
+	 *
+	 * @param directory
+	 *            the directory to write to, created if needed
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public void writeXml(Path directory) throws IOException {
+		Path flights = directory.resolve("flights");
+		Files.createDirectories(flights);
+		write(directory.resolve("airports.xml"), ServerXml.airports(mAirports));
+		write(directory.resolve("airplanes.xml"), ServerXml.airplanes(mAirplanes));
+
+		for (int day = 0; day < mDays; day++) {
+			String date = date(day);
+			for (int airport = 0; airport < mAirports.size(); airport++) {
+				write(flights.resolve(mAirports.get(airport).code() + "_" + date + ".xml"),
+						ServerXml.flights(flights(airport, day)));
+			}
+		}
+	}
+
+	/**
+	 * Write the airports and airplanes as a reference data snapshot
+	 *
+	 * @param file
+	 *            the snapshot file
+	 * @return true if the snapshot was written
+	 */
+	public boolean writeSnapshot(Path file) {
+		return ReferenceDataSnapshot.save(file, mAirports, mAirplanes);
+	}
+
+	/**
+	 * Write all flights of the network as a FlightStore. Flights already
+	 * served hold the seats booked on them, the others are generated airport
+	 * by airport and not kept, so the network never is in memory at once.
+	 *
+	 * @param file
+	 *            the store file
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public void writeFlightStore(Path file) throws IOException {
+		List<String> codes = new ArrayList<String>(mAirports.size());
+		for (Airport airport : mAirports) {
+			codes.add(airport.code());
+		}
+		List<String> models = new ArrayList<String>(mAirplanes.size());
+		for (Airplane airplane : mAirplanes) {
+			models.add(airplane.getModel());
+		}
+
+		try (FlightStore.Writer writer = new FlightStore.Writer(file, codes, models, size())) {
+			for (int airport = 0; airport < mAirports.size(); airport++) {
+				for (int day = 0; day < mDays; day++) {
+					for (Flight flight : flights(airport, day)) {
+						writer.add(flight);
+					}
+				}
+			}
+		}
+	}
+
+	private static void write(Path file, String xml) throws IOException {
+		Files.write(file, xml.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * find a flight generated for the server by its number
+	 */
+	private Flight flight(int number) {
+		int position = number - 1;
+		if (position < 0 || position >= size()) {
+			return null;
+		}
+
+		int flight = position % mFlightsPerDay;
+		int airport = position / mFlightsPerDay % mAirports.size();
+		int day = position / mFlightsPerDay / mAirports.size();
+		return departing(mAirports.get(airport).code(), date(day)).get(flight);
+	}
+
+	private static void book(Flight flight, boolean coach, int seats) {
+		if (coach) {
+			flight.setCoachBooked(flight.getCoachBooked() + seats);
+		} else {
+			flight.setFirstClassBooked(flight.getFirstClassBooked() + seats);
+		}
+	}
+
+	private boolean hasFreeSeat(Flight flight, boolean coach) {
+		for (Airplane airplane : mAirplanes) {
+			if (airplane.getModel().equals(flight.getAirplane())) {
+				return coach ? flight.getCoachBooked() < airplane.getCoachSeats()
+						: flight.getFirstClassBooked() < airplane.getFirstClassSeats();
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * the departures of an airport on a day with the seats booked on them,
+	 * without keeping the flights of a day not served yet
+	 */
+	private Flights flights(int airport, int day) {
+		Flights served = mDeparting.get((long) day * mAirports.size() + airport);
+		return served != null ? served : generate(airport, day);
+	}
+
+	/**
+	 * Make up the departures of an airport on a day of the network, in
+	 * departure order
+	 */
+	private Flights generate(int airport, int day) {
+		int airports = mAirports.size();
+		long cell = (long) day * airports + airport;
+		Random random = new Random(mSeed ^ (cell + 1) * 0x9E3779B97F4A7C15L);
+		long dayStart = (mFirstDay + day) * ServerTime.MINUTES_PER_DAY;
+		int firstNumber = (int) (cell * mFlightsPerDay) + 1;
+
+		int[] minutes = new int[mFlightsPerDay];
+		for (int i = 0; i < minutes.length; i++) {
+			minutes[i] = random.nextInt(ServerTime.MINUTES_PER_DAY);
+		}
+		Arrays.sort(minutes);
+
+		Flights flights = new Flights();
+		for (int i = 0; i < mFlightsPerDay; i++) {
+			int arrival = destination(airport, random);
+			Airplane airplane = mAirplanes.get(random.nextInt(mAirplanes.size()));
+			int flightTime = flightTime(airport, arrival);
+			long departure = dayStart + minutes[i];
+			long coachCents = 4900 + flightTime * 35L + random.nextInt(10000);
+
+			Flight flight = new Flight();
+			flight.setNumber(firstNumber + i);
+			flight.setAirplane(airplane.getModel());
+			flight.setFlightTime(flightTime);
+			flight.setDepartureAirport(mAirports.get(airport).code());
+			flight.setDepartureTime(ServerTime.formatLocal(departure, GMT));
+			flight.setArrivalAirport(mAirports.get(arrival).code());
+			flight.setArrivalTime(ServerTime.formatLocal(departure + flightTime, GMT));
+			flight.setFirstClassPrice("$" + Prices.format(coachCents * (3 + random.nextInt(3))));
+			flight.setCoachPrice("$" + Prices.format(coachCents));
+			flight.setFirstClassBooked(booked(airplane.getFirstClassSeats(), random));
+			flight.setCoachBooked(booked(airplane.getCoachSeats(), random));
+			flights.add(flight);
+		}
+		return flights;
+	}
+
+	/**
+	 * pick where a flight goes: anywhere from a hub or without hubs, to a hub
+	 * from any other airport
+	 */
+	private int destination(int airport, Random random) {
+		if (mHubs.length == 0 || mIsHub[airport]) {
+			int arrival = random.nextInt(mAirports.size() - 1);
+			return arrival >= airport ? arrival + 1 : arrival;
+		}
+		return mHubs[random.nextInt(mHubs.length)];
+	}
+
+	/**
+	 * flight time between two airports in minutes, from the great circle
+	 * distance
+	 */
+	private int flightTime(int from, int to) {
+		double lat1 = Math.toRadians(mLatitude[from]);
+		double lat2 = Math.toRadians(mLatitude[to]);
+		double dLat = lat2 - lat1;
+		double dLon = Math.toRadians(mLongitude[to] - mLongitude[from]);
+		double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+				+ Math.cos(lat1) * Math.cos(lat2) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+		double km = 6371 * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+		return TAXI_MINUTES + (int) Math.round(km / KM_PER_MINUTE);
+	}
+
+	private int booked(int seats, Random random) {
+		long booked = Math.round(seats * (mLoadFactor + random.nextGaussian() * 0.15));
+		return (int) Math.max(0, Math.min(seats, booked));
+	}
+
+	/**
+	 * the n-th three letter code, AAA, AAB and so on
+	 */
+	private static String code(int n) {
+		char[] code = new char[3];
+		for (int i = 2; i >= 0; i--) {
+			code[i] = (char) ('A' + n % 26);
+			n /= 26;
+		}
+		return new String(code);
+	}
+
+	/**
+	 * Write a network to a directory as XML, reference.snapshot and
+	 * flights.store
+	 *
+	 * @param args
+	 *            the directory to write to
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.out.println("usage: ScheduleGenerator <directory>");
+			System.exit(-1);
+		}
+
+		Path directory = Paths.get(args[0]);
+		ScheduleGenerator generator = new ScheduleGenerator();
+		generator.writeXml(directory);
+		generator.writeSnapshot(directory.resolve("reference.snapshot"));
+		generator.writeFlightStore(directory.resolve("flights.store"));
+		System.out.println("Wrote " + generator.mAirports.size() + " airports and " + generator.size()
+				+ " flights to " + directory.toAbsolutePath());
+	}
+}
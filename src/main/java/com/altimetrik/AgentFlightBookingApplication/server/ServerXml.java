@@ -0,0 +1,119 @@
+package com.altimetrik.AgentFlightBookingApplication.server;
+
+import java.time.ZoneId;
+import java.util.Collection;
+
+import com.altimetrik.AgentFlightBookingApplication.model.airplane.Airplane;
+import com.altimetrik.AgentFlightBookingApplication.model.airport.Airport;
+import com.altimetrik.AgentFlightBookingApplication.model.flight.Flight;
+import com.altimetrik.AgentFlightBookingApplication.utils.Prices;
+import com.altimetrik.AgentFlightBookingApplication.utils.ServerTime;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Writes airports, airplanes and flights as the XML the reservation server
+ * returns, which is the format Dao reads. Airports also carry their time zone.
+ */
+public final class ServerXml {
+	private static final ZoneId GMT = ZoneId.of("GMT");
+	private static final String HEADER = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+
+	private ServerXml() {
+	}
+
+	/**
+	 * @param airports
+	 *            the airports to write
+	 * @return the list of airports as XML
+	 */
+	public static String airports(Collection<Airport> airports) {
+		StringBuilder sb = new StringBuilder(airports.size() * 64 + 64);
+		sb.append(HEADER).append("<Airports>");
+		for (Airport airport : airports) {
+			sb.append("<Airport Code=\"").append(airport.code()).append("\" Name=\"");
+			escape(sb, airport.name()).append('"');
+			if (airport.timezone() != null) {
+				// not sent by the classroom server, saves the time zone lookup
+				sb.append(" TimeZone=\"").append(airport.timezone()).append('"');
+			}
+			sb.append("/>");
+		}
+		return sb.append("</Airports>").toString();
+	}
+
+	/**
+	 * @param airplanes
+	 *            the airplanes to write
+	 * @return the list of airplanes as XML
+	 */
+	public static String airplanes(Collection<Airplane> airplanes) {
+		StringBuilder sb = new StringBuilder(airplanes.size() * 128 + 64);
+		sb.append(HEADER).append("<Airplanes>");
+		for (Airplane airplane : airplanes) {
+			sb.append("<Airplane Manufacturer=\"");
+			escape(sb, airplane.getManufacturer()).append("\" Model=\"");
+			escape(sb, airplane.getModel()).append("\">");
+			sb.append("<FirstClassSeats>").append(airplane.getFirstClassSeats()).append("</FirstClassSeats>");
+			sb.append("<CoachSeats>").append(airplane.getCoachSeats()).append("</CoachSeats>");
+			sb.append("</Airplane>");
+		}
+		return sb.append("</Airplanes>").toString();
+	}
+
+	/**
+	 * @param flights
+	 *            the flights to write
+	 * @return the list of flights as XML
+	 */
+	public static String flights(Collection<? extends Flight> flights) {
+		StringBuilder sb = new StringBuilder(flights.size() * 360 + 64);
+		sb.append(HEADER).append("<Flights>");
+		for (Flight flight : flights) {
+			sb.append("<Flight Airplane=\"");
+			escape(sb, flight.getAirplane()).append("\" FlightTime=\"").append(flight.getFlightTime())
+					.append("\" Number=\"").append(flight.getNumber()).append("\">");
+			sb.append("<Departure><Code>").append(flight.getDepartureAirport()).append("</Code><Time>")
+					.append(ServerTime.formatLocal(flight.getDepartureEpochMinute(), GMT))
+					.append("</Time></Departure>");
+			sb.append("<Arrival><Code>").append(flight.getArrivalAirport()).append("</Code><Time>")
+					.append(ServerTime.formatLocal(flight.getArrivalEpochMinute(), GMT)).append("</Time></Arrival>");
+			sb.append("<Seating>");
+			sb.append("<FirstClass Price=\"$").append(Prices.format(flight.getFirstClassPriceCents())).append("\">")
+					.append(flight.getFirstClassBooked()).append("</FirstClass>");
+			sb.append("<Coach Price=\"$").append(Prices.format(flight.getCoachPriceCents())).append("\">")
+					.append(flight.getCoachBooked()).append("</Coach>");
+			sb.append("</Seating></Flight>");
+		}
+		return sb.append("</Flights>").toString();
+	}
+
+	private static StringBuilder escape(StringBuilder sb, String text) {
+		if (text == null) {
+			return sb;
+		}
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+			case '&':
+				sb.append("&amp;");
+				break;
+			case '<':
+				sb.append("&lt;");
+				break;
+			case '>':
+				sb.append("&gt;");
+				break;
+			case '"':
+				sb.append("&quot;");
+				break;
+			default:
+				sb.append(c);
+			}
+		}
+		return sb;
+	}
+}
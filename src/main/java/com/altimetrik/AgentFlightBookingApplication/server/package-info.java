@@ -0,0 +1,10 @@
+/**
+ * Local stand-in for the reservation server, for offline integration and load
+ * testing
+ */
+/**
+ * 
+ * @author Sonu Agrawal
+ *
+ */
+package com.altimetrik.AgentFlightBookingApplication.server;
@@ -0,0 +1,69 @@
+package com.altimetrik.AgentFlightBookingApplication.utils;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Conversions of the price strings of the reservation server, like "$1,234.56",
+ * to whole cents so prices can be added and compared without rounding errors.
+ */
+public final class Prices {
+
+	private Prices() {
+	}
+
+	/**
+	 * Parse a server price. Everything but digits and the decimal point is
+	 * ignored, digits after the second decimal are rounded.
+	 *
+	 * @param price
+	 *            price in dollars, like "$1,234.56"
+	 * @return the price in cents, 0 if the price is null or has no digits
+	 */
+	public static long parseCents(String price) {
+		if (price == null) {
+			return 0;
+		}
+
+		long dollars = 0;
+		long cents = 0;
+		int decimals = -1; // digits seen after the decimal point
+		boolean roundUp = false;
+
+		for (int i = 0; i < price.length(); i++) {
+			char c = price.charAt(i);
+			if (c == '.') {
+				if (decimals >= 0)
+					break;
+				decimals = 0;
+			} else if (c >= '0' && c <= '9') {
+				if (decimals < 0) {
+					dollars = dollars * 10 + (c - '0');
+				} else if (decimals < 2) {
+					cents = cents * 10 + (c - '0');
+					decimals++;
+				} else if (decimals == 2) {
+					roundUp = c >= '5';
+					decimals++;
+				}
+			}
+		}
+
+		if (decimals == 1)
+			cents *= 10;
+		return dollars * 100 + cents + (roundUp ? 1 : 0);
+	}
+
+	/**
+	 * Format cents as dollars
+	 *
+	 * @param cents
+	 *            the price in cents
+	 * @return the price in "1234.56" format
+	 */
+	public static String format(long cents) {
+		return String.format("%d.%02d", cents / 100, Math.abs(cents % 100));
+	}
+}
@@ -106,7 +106,18 @@ public class QueryFactory {
 	 * @return the String written to the HTTP POST to update flights on server
 	 */
 	public static String updateFlights (String teamName, Reservation reservation) {
-		return "team=" + teamName + "&action=buyTickets&flightData=" + reservation.toXML();
+		return updateFlights(teamName, reservation.toXML());
+	}
+
+	/**
+	 * Update the server database with flights to be updated
+	 * 
+	 * @param teamName is the name of the team holding the lock
+	 * @param flightData the flights and seating bought, as made by Reservation.toXML
+	 * @return the String written to the HTTP POST to update flights on server
+	 */
+	public static String updateFlights (String teamName, String flightData) {
+		return "team=" + teamName + "&action=buyTickets&flightData=" + flightData;
 	}
 
 }
@@ -0,0 +1,141 @@
+package com.altimetrik.AgentFlightBookingApplication.utils;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Conversions between the time strings of the reservation server, in "yyyy
+ * MMM dd HH:mm z" format, and UTC minutes since the epoch. Times are parsed
+ * once when flights are read, after that all time arithmetic is done on
+ * minutes.
+ */
+public final class ServerTime {
+	/**
+	 * number of minutes in one day
+	 */
+	public static final int MINUTES_PER_DAY = 24 * 60;
+
+	private static final DateTimeFormatter SERVER_FORMAT = DateTimeFormatter.ofPattern("yyyy MMM d HH:mm z",
+			Locale.US);
+	private static final DateTimeFormatter LOCAL_FORMAT = DateTimeFormatter.ofPattern("yyyy MMM dd HH:mm z",
+			Locale.US);
+	private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy_M_d");
+
+	private ServerTime() {
+	}
+
+	/**
+	 * Parse a server time
+	 *
+	 * @param time
+	 *            time in "yyyy MMM dd HH:mm z" format
+	 * @return minutes since the epoch in UTC
+	 */
+	public static long toEpochMinute(String time) {
+		return ZonedDateTime.parse(time, SERVER_FORMAT).toEpochSecond() / 60;
+	}
+
+	/**
+	 * Parse a server date
+	 *
+	 * @param date
+	 *            date in yyyy_mm_dd format
+	 * @return days since the epoch
+	 */
+	public static long toEpochDay(String date) {
+		return LocalDate.parse(date, DATE_FORMAT).toEpochDay();
+	}
+
+	/**
+	 * @param epochMinute
+	 *            minutes since the epoch in UTC
+	 * @return the UTC day of the minute, in days since the epoch
+	 */
+	public static long epochDay(long epochMinute) {
+		return Math.floorDiv(epochMinute, MINUTES_PER_DAY);
+	}
+
+	/**
+	 * @param epochMinute
+	 *            minutes since the epoch in UTC
+	 * @param zone
+	 *            time zone of the local time
+	 * @return the local day of the minute in the zone, in days since the epoch
+	 */
+	public static long localEpochDay(long epochMinute, ZoneId zone) {
+		int offsetSeconds = zone.getRules().getOffset(Instant.ofEpochSecond(epochMinute * 60)).getTotalSeconds();
+		return epochDay(epochMinute + offsetSeconds / 60);
+	}
+
+	/**
+	 * Format the UTC date of a minute as used in server requests
+	 *
+	 * @param epochMinute
+	 *            minutes since the epoch in UTC
+	 * @return the date in yyyy_MM_dd format
+	 */
+	public static String formatDate(long epochMinute) {
+		return formatDate(LocalDate.ofEpochDay(epochDay(epochMinute)));
+	}
+
+	/**
+	 * Move a server date by a number of days, rolling over month and year
+	 * ends
+	 *
+	 * @param date
+	 *            date in yyyy_mm_dd format
+	 * @param days
+	 *            days to add, may be negative
+	 * @return the date in yyyy_MM_dd format
+	 */
+	public static String plusDays(String date, long days) {
+		return formatDate(LocalDate.parse(date, DATE_FORMAT).plusDays(days));
+	}
+
+	private static String formatDate(LocalDate date) {
+		StringBuilder sb = new StringBuilder(10);
+
+		sb.append(date.getYear()).append('_');
+		if (date.getMonthValue() < 10)
+			sb.append('0');
+		sb.append(date.getMonthValue()).append('_');
+		if (date.getDayOfMonth() < 10)
+			sb.append('0');
+		sb.append(date.getDayOfMonth());
+
+		return sb.toString();
+	}
+
+	/**
+	 * Format a minute as local time of a zone
+	 *
+	 * @param epochMinute
+	 *            minutes since the epoch in UTC
+	 * @param zone
+	 *            time zone to show the time in
+	 * @return the local time in "yyyy MMM dd HH:mm z" format
+	 */
+	public static String formatLocal(long epochMinute, ZoneId zone) {
+		return LOCAL_FORMAT.format(Instant.ofEpochSecond(epochMinute * 60).atZone(zone));
+	}
+
+	/**
+	 * @param epochMinute
+	 *            minutes since the epoch in UTC
+	 * @return the minute as UTC date and time
+	 */
+	public static LocalDateTime toLocalDateTime(long epochMinute) {
+		return LocalDateTime.ofEpochSecond(epochMinute * 60, 0, ZoneOffset.UTC);
+	}
+}
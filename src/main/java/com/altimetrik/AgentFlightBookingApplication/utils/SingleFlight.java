@@ -0,0 +1,69 @@
+package com.altimetrik.AgentFlightBookingApplication.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Coalesces concurrent identical calls. The first caller for a key runs the
+ * call, callers arriving with the same key while it is running wait for it
+ * and share its result instead of running the call again.
+ *
+ * @param <V>
+ *            type of the shared result
+ */
+public final class SingleFlight<V> {
+	private final ConcurrentHashMap<String, CompletableFuture<V>> mInFlight = new ConcurrentHashMap<String, CompletableFuture<V>>();
+	private final AtomicLong mCoalesced = new AtomicLong();
+
+	/**
+	 * Run the call for the key unless the same key is already running, in
+	 * which case wait for that call and return its result
+	 *
+	 * @param key
+	 *            identifies identical calls
+	 * @param call
+	 *            the call to run
+	 * @return result of the call, possibly shared with other callers
+	 */
+	public V execute(String key, Supplier<V> call) {
+		CompletableFuture<V> created = new CompletableFuture<V>();
+		CompletableFuture<V> running = mInFlight.putIfAbsent(key, created);
+
+		if (running != null) {
+			mCoalesced.incrementAndGet();
+			try {
+				return running.join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException)
+					throw (RuntimeException) e.getCause();
+				throw e;
+			}
+		}
+
+		try {
+			V result = call.get();
+			created.complete(result);
+			return result;
+		} catch (RuntimeException | Error e) {
+			created.completeExceptionally(e);
+			throw e;
+		} finally {
+			mInFlight.remove(key, created);
+		}
+	}
+
+	/**
+	 * @return number of calls answered by another caller's call
+	 */
+	public long coalesced() {
+		return mCoalesced.get();
+	}
+}
@@ -0,0 +1,84 @@
+package com.altimetrik.AgentFlightBookingApplication.utils;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Shared thread pools of the application. All threads are daemon threads so
+ * the pools never keep the application alive.
+ */
+public final class WorkerPools {
+	private static final int IO_THREADS = Integer.getInteger("worker.io.threads", 16);
+	private static final int SEARCH_THREADS = Integer.getInteger("worker.search.threads", 4);
+
+	private static ExecutorService mIo;
+	private static ExecutorService mSearch;
+	private static ScheduledExecutorService mTimer;
+
+	private WorkerPools() {
+	}
+
+	/**
+	 * Return the bounded pool used for blocking calls to the reservation
+	 * server. The size is set by the system property worker.io.threads.
+	 *
+	 * @return the shared io pool
+	 */
+	public static synchronized ExecutorService io() {
+		if (mIo == null) {
+			mIo = Executors.newFixedThreadPool(IO_THREADS, daemonThreads("io-worker"));
+		}
+		return mIo;
+	}
+
+	/**
+	 * Return the pool searches run on when they run next to each other. It is
+	 * separate from the io pool because searches wait for io tasks. The size
+	 * is set by the system property worker.search.threads.
+	 *
+	 * @return the shared search pool
+	 */
+	public static synchronized ExecutorService search() {
+		if (mSearch == null) {
+			mSearch = Executors.newFixedThreadPool(SEARCH_THREADS, daemonThreads("search-worker"));
+		}
+		return mSearch;
+	}
+
+	/**
+	 * Return the single thread running delayed tasks, like releasing a server
+	 * lock when its lease runs out. Tasks must be short.
+	 *
+	 * @return the shared timer
+	 */
+	public static synchronized ScheduledExecutorService timer() {
+		if (mTimer == null) {
+			mTimer = Executors.newSingleThreadScheduledExecutor(daemonThreads("timer"));
+		}
+		return mTimer;
+	}
+
+	/**
+	 * Return a thread factory creating named daemon threads
+	 *
+	 * @param prefix
+	 *            prefix of the thread names
+	 * @return the thread factory
+	 */
+	public static ThreadFactory daemonThreads(final String prefix) {
+		final AtomicInteger count = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+}
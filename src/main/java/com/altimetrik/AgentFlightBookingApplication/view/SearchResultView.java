@@ -5,6 +5,7 @@ import java.util.Scanner;
 
 import com.altimetrik.AgentFlightBookingApplication.model.reservation.Reservation;
 import com.altimetrik.AgentFlightBookingApplication.model.reservation.Reservations;
+import com.altimetrik.AgentFlightBookingApplication.model.reservation.SortKey;
 
 /**
  * 
@@ -222,25 +223,41 @@ public class SearchResultView {
 		boolean validSorting = false;
 		do {
 			System.out.println("***************Sort flights by price/time/departure/arrival***************");
+			System.out.println("***************(several separated by commas, e.g. price,time)***************");
 			input = scan.nextLine();
 
-			if (input.toUpperCase().equals("PRICE")) {
-				results.sortbyTotalPrice(results);
-				validSorting = true;
-
-			} else if (input.toUpperCase().equals("TIME")) {
-				results.sortbyTotalFlightTime(results);
-				validSorting = true;
-
-			} else if (input.toUpperCase().equals("DEPARTURE")) {
-				results.sortbyDepartureTime(results);
-				validSorting = true;
-
-			} else if (input.toUpperCase().equals("Arrival")) {
-				results.sortbyArrivalTime(results);
+			SortKey[] keys = parseSortKeys(input);
+			if (keys != null) {
+				results.sortBy(keys);
 				validSorting = true;
 			}
 		} while (!validSorting);
 	}
 
+	/**
+	 * Parse sort criteria separated by commas
+	 * 
+	 * @param input
+	 *            customer input, like "price,time"
+	 * @return the sort keys in input order, null if any criteria is unknown
+	 */
+	private SortKey[] parseSortKeys(String input) {
+		String[] names = input.split(",");
+		SortKey[] keys = new SortKey[names.length];
+		for (int i = 0; i < names.length; i++) {
+			String name = names[i].trim().toUpperCase();
+			if (name.equals("PRICE")) {
+				keys[i] = SortKey.PRICE;
+			} else if (name.equals("TIME")) {
+				keys[i] = SortKey.DURATION;
+			} else if (name.equals("DEPARTURE")) {
+				keys[i] = SortKey.DEPARTURE;
+			} else if (name.equals("ARRIVAL")) {
+				keys[i] = SortKey.ARRIVAL;
+			} else {
+				return null;
+			}
+		}
+		return keys;
+	}
 }
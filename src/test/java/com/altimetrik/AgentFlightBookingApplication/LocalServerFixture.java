@@ -0,0 +1,151 @@
+package com.altimetrik.AgentFlightBookingApplication;
+
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.altimetrik.AgentFlightBookingApplication.dao.BookingDedup;
+import com.altimetrik.AgentFlightBookingApplication.dao.FlightCache;
+import com.altimetrik.AgentFlightBookingApplication.dao.ServerInterface;
+import com.altimetrik.AgentFlightBookingApplication.dao.Transport;
+import com.altimetrik.AgentFlightBookingApplication.model.airplane.AirplaneCatalog;
+import com.altimetrik.AgentFlightBookingApplication.model.flight.Flight;
+import com.altimetrik.AgentFlightBookingApplication.model.flight.Flights;
+import com.altimetrik.AgentFlightBookingApplication.model.flight.SeatLedger;
+import com.altimetrik.AgentFlightBookingApplication.model.reservation.Reservation;
+import com.altimetrik.AgentFlightBookingApplication.server.LocalReservationServer;
+import com.altimetrik.AgentFlightBookingApplication.server.ScheduleGenerator;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Starts a LocalReservationServer on a small generated network and points
+ * ServerInterface at it, for the tests that talk to a server. The process
+ * wide flight cache, seat ledger and booking table are emptied on start, so
+ * one test class does not see the bookings of another.
+ */
+public final class LocalServerFixture {
+	/**
+	 * the team every test books for, the one Reservation books for
+	 */
+	public static final String TEAM = "Sonu";
+
+	private LocalServerFixture() {
+	}
+
+	/**
+	 * @return a network of 12 airports with 40 flights a day from each for 5
+	 *         days from 2017_05_01
+	 */
+	public static ScheduleGenerator schedule() {
+		return new ScheduleGenerator(12, 0.2, 40, 5, "2017_05_01", 0.6, 509);
+	}
+
+	/**
+	 * Start a server and load the airports and airplanes from it
+	 *
+	 * @param schedule
+	 *            the flights to serve
+	 * @return the started server, to be stopped by the caller
+	 * @throws IOException
+	 *             if the server cannot be started
+	 */
+	public static LocalReservationServer start(ScheduleGenerator schedule) throws IOException {
+		LocalReservationServer server = new LocalReservationServer(schedule, 0, 0, 120000, 8).start(0);
+		ServerInterface.INSTANCE.setUrlBase(server.url());
+		ServerInterface.INSTANCE.setJournal(null);
+		reset();
+
+		ServerInterface.INSTANCE.getAirports(TEAM);
+		AirplaneCatalog.getInstance().load(ServerInterface.INSTANCE.getAirplanes(TEAM));
+		return server;
+	}
+
+	/**
+	 * Find flights with free coach seats
+	 *
+	 * @param schedule
+	 *            the flights served
+	 * @param count
+	 *            number of flights wanted
+	 * @return flights departing the first airport on the second day that have
+	 *         a coach seat free
+	 */
+	public static List<Flight> freeFlights(ScheduleGenerator schedule, int count) {
+		AirplaneCatalog catalog = AirplaneCatalog.getInstance();
+		Flights departing = ServerInterface.INSTANCE.getFlights(TEAM, schedule.airports().get(0).code(),
+				schedule.date(1));
+
+		List<Flight> flights = new ArrayList<Flight>(count);
+		for (Flight flight : departing) {
+			if (flights.size() < count && flight.getCoachBooked() < catalog.coachSeats(flight.getAirplane())) {
+				flights.add(flight);
+			}
+		}
+		return flights;
+	}
+
+	/**
+	 * Create one coach reservation for each of the flights
+	 *
+	 * @param flights
+	 *            the flights to book
+	 * @return a reservation of one leg for every flight
+	 */
+	public static List<Reservation> reservations(List<Flight> flights) {
+		List<Reservation> reservations = new ArrayList<Reservation>(flights.size());
+		for (Flight flight : flights) {
+			reservations.add(reservation(flight));
+		}
+		return reservations;
+	}
+
+	/**
+	 * @param flight
+	 *            the flight to book
+	 * @return a coach reservation of the flight
+	 */
+	public static Reservation reservation(Flight flight) {
+		Flights legs = new Flights();
+		legs.add(flight);
+		return new Reservation(legs, "Coach", 0);
+	}
+
+	/**
+	 * Wrap a transport so purchases reach the server but their answers are
+	 * lost, as when the client times out after the server bought the seats
+	 *
+	 * @param transport
+	 *            the transport sending the requests
+	 * @return a transport throwing a timeout once a purchase was sent
+	 */
+	public static Transport losingPurchaseAnswers(Transport transport) {
+		return new Transport() {
+			public Response get(String url, String teamName) throws IOException {
+				return transport.get(url, teamName);
+			}
+
+			public Response post(String url, String teamName, String params) throws IOException {
+				Response response = transport.post(url, teamName, params);
+				if (!params.contains("action=buyTickets")) {
+					return response;
+				}
+				response.close();
+				throw new HttpTimeoutException("answer to the purchase lost");
+			}
+		};
+	}
+
+	/**
+	 * Forget the cached flights, the seats held and sold and the bookings made
+	 */
+	public static void reset() {
+		FlightCache.getInstance().invalidateAll();
+		SeatLedger.getInstance().clear();
+		BookingDedup.getInstance().clear();
+	}
+}
@@ -0,0 +1,173 @@
+package com.altimetrik.AgentFlightBookingApplication.dao;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.altimetrik.AgentFlightBookingApplication.LocalServerFixture;
+import com.altimetrik.AgentFlightBookingApplication.model.airplane.AirplaneCatalog;
+import com.altimetrik.AgentFlightBookingApplication.model.flight.Flight;
+import com.altimetrik.AgentFlightBookingApplication.model.reservation.Reservation;
+import com.altimetrik.AgentFlightBookingApplication.server.LocalReservationServer;
+import com.altimetrik.AgentFlightBookingApplication.server.ScheduleGenerator;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Resubmitted bookings against a LocalReservationServer
+ */
+public class BookingDedupTest {
+	private static ScheduleGenerator mSchedule;
+	private static LocalReservationServer mServer;
+
+	@BeforeClass
+	public static void startServer() throws Exception {
+		mSchedule = LocalServerFixture.schedule();
+		mServer = LocalServerFixture.start(mSchedule);
+	}
+
+	@AfterClass
+	public static void stopServer() {
+		mServer.stop();
+	}
+
+	@Before
+	public void reset() {
+		LocalServerFixture.reset();
+	}
+
+	@After
+	public void speedUp() {
+		mServer.latency(0, 0);
+	}
+
+	@Test
+	public void duplicateWhileTheFirstIsInFlightWaitsForIt() throws Exception {
+		Reservation reservation = LocalServerFixture.reservation(LocalServerFixture.freeFlights(mSchedule, 1).get(0));
+		long sold = mServer.ticketsSold();
+		long duplicates = BookingDedup.getInstance().duplicates();
+		mServer.latency(300, 0);
+
+		CompletableFuture<boolean[]> first = CompletableFuture.supplyAsync(
+				() -> ServerInterface.INSTANCE.book(LocalServerFixture.TEAM, Collections.singletonList(reservation)));
+		Thread.sleep(100);
+		assertFalse(first.isDone());
+		boolean[] second = ServerInterface.INSTANCE.book(LocalServerFixture.TEAM,
+				Collections.singletonList(reservation));
+
+		assertArrayEquals(new boolean[] { true }, first.get(5, TimeUnit.SECONDS));
+		assertArrayEquals(new boolean[] { true }, second);
+		assertEquals(1, mServer.ticketsSold() - sold);
+		assertEquals(1, BookingDedup.getInstance().duplicates() - duplicates);
+	}
+
+	@Test
+	public void sameFlightsInOneSessionAreBookedOnce() {
+		Flight flight = LocalServerFixture.freeFlights(mSchedule, 1).get(0);
+		Reservation first = LocalServerFixture.reservation(flight);
+		Reservation again = LocalServerFixture.reservation(flight);
+		Reservation otherCustomer = LocalServerFixture.reservation(flight);
+		first.sessionId("customer");
+		again.sessionId("customer");
+		otherCustomer.sessionId("other customer");
+		long sold = mServer.ticketsSold();
+
+		boolean[] booked = ServerInterface.INSTANCE.book(LocalServerFixture.TEAM,
+				Arrays.asList(first, again, otherCustomer));
+
+		assertArrayEquals(new boolean[] { true, true, true }, booked);
+		assertEquals(2, mServer.ticketsSold() - sold);
+	}
+
+	@Test
+	public void failedBookingCanBeTriedAgain() {
+		Flight flight = LocalServerFixture.freeFlights(mSchedule, 1).get(0);
+		Reservation reservation = LocalServerFixture.reservation(flight);
+
+		// another agency buys the seats left, the downloaded flight still
+		// shows them free
+		int free = AirplaneCatalog.getInstance().coachSeats(flight.getAirplane()) - flight.getCoachBooked();
+		int[] numbers = new int[free];
+		String[] seating = new String[free];
+		Arrays.fill(numbers, flight.getNumber());
+		Arrays.fill(seating, "Coach");
+		assertTrue(mSchedule.buyTickets(numbers, seating));
+
+		assertFalse(ServerInterface.INSTANCE.book(LocalServerFixture.TEAM, Collections.singletonList(reservation))[0]);
+		long requests = mServer.requests();
+		assertFalse(ServerInterface.INSTANCE.book(LocalServerFixture.TEAM, Collections.singletonList(reservation))[0]);
+		assertTrue(mServer.requests() > requests);
+	}
+
+	@Test
+	public void retryAfterATimeoutIsNotSentAgain() {
+		Reservation reservation = LocalServerFixture.reservation(LocalServerFixture.freeFlights(mSchedule, 1).get(0));
+		long sold = mServer.ticketsSold();
+		long duplicates = BookingDedup.getInstance().duplicates();
+
+		// the server buys the seat, the client times out waiting
+		Transport transport = ServerInterface.INSTANCE.getTransport();
+		ServerInterface.INSTANCE.setTransport(LocalServerFixture.losingPurchaseAnswers(transport));
+		try {
+			assertFalse(ServerInterface.INSTANCE.book(LocalServerFixture.TEAM, Collections.singletonList(reservation))[0]);
+		} finally {
+			ServerInterface.INSTANCE.setTransport(transport);
+		}
+
+		long requests = mServer.requests();
+		assertFalse(ServerInterface.INSTANCE.book(LocalServerFixture.TEAM, Collections.singletonList(reservation))[0]);
+		assertEquals(requests, mServer.requests());
+		assertEquals(1, BookingDedup.getInstance().duplicates() - duplicates);
+		assertEquals(1, mServer.ticketsSold() - sold);
+	}
+
+	@Test
+	public void flightNumberOnAnotherDayIsAnotherBooking() {
+		Flight monday = new Flight();
+		monday.setNumber(42);
+		monday.setDepartureTime("2017 May 01 12:00 GMT");
+		Flight tuesday = new Flight();
+		tuesday.setNumber(42);
+		tuesday.setDepartureTime("2017 May 02 12:00 GMT");
+
+		Reservation first = LocalServerFixture.reservation(monday);
+		Reservation second = LocalServerFixture.reservation(tuesday);
+		first.sessionId("customer");
+		second.sessionId("customer");
+		assertNotEquals(first.idempotencyKey(), second.idempotencyKey());
+	}
+
+	@Test
+	public void fullTableKeepsBookingsInProgress() {
+		BookingDedup dedup = new BookingDedup(2, 10, TimeUnit.MINUTES);
+		CompletableFuture<Boolean> inProgress = new CompletableFuture<Boolean>();
+		assertNull(dedup.claim("in progress", inProgress));
+
+		for (int i = 0; i < 5; i++) {
+			CompletableFuture<Boolean> done = new CompletableFuture<Boolean>();
+			assertNull(dedup.claim("done " + i, done));
+			dedup.complete("done " + i, done, PurchaseOutcome.BOUGHT);
+		}
+
+		assertEquals(2, dedup.size());
+		assertSame(inProgress, dedup.claim("in progress", new CompletableFuture<Boolean>()));
+	}
+}
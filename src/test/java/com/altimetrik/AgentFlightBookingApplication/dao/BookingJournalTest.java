@@ -0,0 +1,255 @@
+package com.altimetrik.AgentFlightBookingApplication.dao;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.altimetrik.AgentFlightBookingApplication.LocalServerFixture;
+import com.altimetrik.AgentFlightBookingApplication.model.flight.Flight;
+import com.altimetrik.AgentFlightBookingApplication.model.flight.SeatLedger;
+import com.altimetrik.AgentFlightBookingApplication.model.reservation.Reservation;
+import com.altimetrik.AgentFlightBookingApplication.server.LocalReservationServer;
+import com.altimetrik.AgentFlightBookingApplication.server.ScheduleGenerator;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * The purchase journal read back after crashes and compaction, and replayed
+ * against a LocalReservationServer
+ */
+public class BookingJournalTest {
+	private static final int SIZE = 4096;
+	private static final int HEADER = 6;
+
+	private static ScheduleGenerator mSchedule;
+	private static LocalReservationServer mServer;
+
+	@Rule
+	public TemporaryFolder mFolder = new TemporaryFolder();
+
+	private Path mFile;
+
+	@BeforeClass
+	public static void startServer() throws Exception {
+		mSchedule = LocalServerFixture.schedule();
+		mServer = LocalServerFixture.start(mSchedule);
+	}
+
+	@AfterClass
+	public static void stopServer() {
+		mServer.stop();
+	}
+
+	@Before
+	public void createFile() {
+		LocalServerFixture.reset();
+		mFile = mFolder.getRoot().toPath().resolve("booking.journal");
+	}
+
+	@Test
+	public void outcomesClearTheirIntents() throws IOException {
+		try (BookingJournal journal = new BookingJournal(mFile, SIZE, 10)) {
+			long bought = journal.intent("a", "<Flights/>");
+			journal.intent("b", "<Flights/>");
+			journal.outcome(bought, true);
+		}
+
+		try (BookingJournal journal = new BookingJournal(mFile, SIZE, 10)) {
+			assertEquals(1, journal.pending().size());
+			assertEquals("b", journal.pending().get(0).teamName());
+		}
+	}
+
+	@Test
+	public void recordCutShortIsDroppedOnReopen() throws IOException {
+		try (BookingJournal journal = new BookingJournal(mFile, SIZE, 10)) {
+			journal.intent("a", "first");
+			journal.intent("b", "second");
+		}
+
+		// the process died while the second record was written
+		List<Integer> records = records(mFile);
+		try (FileChannel channel = FileChannel.open(mFile, StandardOpenOption.WRITE)) {
+			channel.truncate(records.get(1) + 10);
+		}
+
+		try (BookingJournal journal = new BookingJournal(mFile, SIZE, 10)) {
+			assertEquals(1, journal.pending().size());
+			assertEquals("first", journal.pending().get(0).flightData());
+			journal.intent("c", "third");
+		}
+
+		// the cleared tail is written over, not read as the lost record
+		try (BookingJournal journal = new BookingJournal(mFile, SIZE, 10)) {
+			assertEquals(2, journal.pending().size());
+			assertEquals("third", journal.pending().get(1).flightData());
+		}
+	}
+
+	@Test
+	public void recordFailingItsChecksumIsDroppedOnReopen() throws IOException {
+		try (BookingJournal journal = new BookingJournal(mFile, SIZE, 10)) {
+			journal.intent("a", "first");
+			journal.intent("b", "second");
+		}
+
+		List<Integer> records = records(mFile);
+		try (FileChannel channel = FileChannel.open(mFile, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] { 'X' }), records.get(1) + 8);
+		}
+
+		try (BookingJournal journal = new BookingJournal(mFile, SIZE, 10)) {
+			assertEquals(1, journal.pending().size());
+			assertEquals("first", journal.pending().get(0).flightData());
+		}
+	}
+
+	@Test
+	public void fullSegmentIsCompactedToThePendingIntents() throws IOException {
+		long kept;
+		long last = 0;
+		try (BookingJournal journal = new BookingJournal(mFile, 2048, 10)) {
+			kept = journal.intent("a", "kept");
+
+			// many times the segment size
+			for (int i = 0; i < 1000; i++) {
+				last = journal.intent("a", "<Flights><Flight number=\"" + i + "\" seating=\"Coach\"/></Flights>");
+				assertTrue(last > 0);
+				journal.outcome(last, true);
+			}
+		}
+
+		assertEquals(2048, Files.size(mFile));
+		try (BookingJournal journal = new BookingJournal(mFile, 2048, 10)) {
+			assertEquals(1, journal.pending().size());
+			assertEquals(kept, journal.pending().get(0).id());
+			assertEquals("kept", journal.pending().get(0).flightData());
+			assertTrue(journal.intent("a", "next") > last);
+		}
+		// no temporary segment is left behind
+		assertEquals(1, mFolder.getRoot().list().length);
+	}
+
+	@Test
+	public void replayBuysThePendingPurchases() throws IOException {
+		Flight flight = LocalServerFixture.freeFlights(mSchedule, 1).get(0);
+		List<Reservation> reservations = new ArrayList<Reservation>();
+		reservations.add(LocalServerFixture.reservation(flight));
+		long sold = mServer.ticketsSold();
+
+		try (BookingJournal journal = new BookingJournal(mFile, SIZE, 10)) {
+			// a purchase sent before the process died without an answer
+			journal.intent(LocalServerFixture.TEAM, Reservation.toXML(reservations));
+		}
+
+		try (BookingJournal journal = new BookingJournal(mFile, SIZE, 10)) {
+			ServerInterface.INSTANCE.setJournal(journal);
+			try {
+				assertEquals(1, ServerInterface.INSTANCE.replayJournal());
+				assertEquals(0, ServerInterface.INSTANCE.replayJournal());
+			} finally {
+				ServerInterface.INSTANCE.setJournal(null);
+			}
+			assertTrue(journal.pending().isEmpty());
+		}
+
+		assertEquals(1, mServer.ticketsSold() - sold);
+		// the ledger knew nothing of the flight, it counts the replayed seat
+		assertEquals(1, SeatLedger.getInstance().sold(flight, true));
+		// the cached flight was dropped and is downloaded with the seat sold
+		Flight downloaded = LocalServerFixture.freeFlights(mSchedule, 1).get(0);
+		assertEquals(flight.getNumber(), downloaded.getNumber());
+		assertEquals(flight.getCoachBooked() + 1, downloaded.getCoachBooked());
+	}
+
+	@Test
+	public void lostAnswerIsAbandonedNotReplayed() throws IOException {
+		Reservation reservation = LocalServerFixture.reservation(LocalServerFixture.freeFlights(mSchedule, 1).get(0));
+		long sold = mServer.ticketsSold();
+
+		Transport transport = ServerInterface.INSTANCE.getTransport();
+		try (BookingJournal journal = new BookingJournal(mFile, SIZE, 10)) {
+			ServerInterface.INSTANCE.setJournal(journal);
+			ServerInterface.INSTANCE.setTransport(LocalServerFixture.losingPurchaseAnswers(transport));
+			try {
+				assertArrayEquals(new boolean[] { false },
+						ServerInterface.INSTANCE.book(LocalServerFixture.TEAM, Collections.singletonList(reservation)));
+			} finally {
+				ServerInterface.INSTANCE.setTransport(transport);
+				ServerInterface.INSTANCE.setJournal(null);
+			}
+			assertTrue(journal.pending().isEmpty());
+		}
+
+		try (BookingJournal journal = new BookingJournal(mFile, SIZE, 10)) {
+			assertTrue(journal.pending().isEmpty());
+			ServerInterface.INSTANCE.setJournal(journal);
+			try {
+				assertEquals(0, ServerInterface.INSTANCE.replayJournal());
+			} finally {
+				ServerInterface.INSTANCE.setJournal(null);
+			}
+		}
+		// the server bought the seat once, when the answer was lost
+		assertEquals(1, mServer.ticketsSold() - sold);
+	}
+
+	@Test
+	public void intentOlderThanTheWindowIsNotReplayed() throws Exception {
+		Flight flight = LocalServerFixture.freeFlights(mSchedule, 1).get(0);
+		List<Reservation> reservations = Collections.singletonList(LocalServerFixture.reservation(flight));
+		long sold = mServer.ticketsSold();
+
+		try (BookingJournal journal = new BookingJournal(mFile, SIZE, 10)) {
+			journal.intent(LocalServerFixture.TEAM, Reservation.toXML(reservations));
+		}
+		Thread.sleep(50);
+
+		try (BookingJournal journal = new BookingJournal(mFile, SIZE, 10)) {
+			ServerInterface.INSTANCE.setJournal(journal);
+			try {
+				assertEquals(0, ServerInterface.INSTANCE.replayJournal(10, TimeUnit.MILLISECONDS));
+			} finally {
+				ServerInterface.INSTANCE.setJournal(null);
+			}
+			assertTrue(journal.pending().isEmpty());
+		}
+		try (BookingJournal journal = new BookingJournal(mFile, SIZE, 10)) {
+			assertTrue(journal.pending().isEmpty());
+		}
+		assertEquals(sold, mServer.ticketsSold());
+	}
+
+	/**
+	 * @return the offsets of the records of a journal file
+	 */
+	private static List<Integer> records(Path file) throws IOException {
+		ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+		List<Integer> records = new ArrayList<Integer>();
+		for (int position = HEADER; data.getInt(position) != 0; position += data.getInt(position) + 8) {
+			records.add(position);
+		}
+		return records;
+	}
+}
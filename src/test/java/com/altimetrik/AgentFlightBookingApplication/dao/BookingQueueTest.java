@@ -0,0 +1,126 @@
+package com.altimetrik.AgentFlightBookingApplication.dao;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.altimetrik.AgentFlightBookingApplication.LocalServerFixture;
+import com.altimetrik.AgentFlightBookingApplication.model.reservation.Reservation;
+import com.altimetrik.AgentFlightBookingApplication.server.LocalReservationServer;
+import com.altimetrik.AgentFlightBookingApplication.server.ScheduleGenerator;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * The booking queue against a LocalReservationServer answering slowly, so
+ * reservations pile up while the writer books
+ */
+public class BookingQueueTest {
+	private static ScheduleGenerator mSchedule;
+	private static LocalReservationServer mServer;
+
+	@BeforeClass
+	public static void startServer() throws Exception {
+		mSchedule = LocalServerFixture.schedule();
+		mServer = LocalServerFixture.start(mSchedule);
+	}
+
+	@AfterClass
+	public static void stopServer() {
+		mServer.stop();
+	}
+
+	@Before
+	public void slowDown() {
+		LocalServerFixture.reset();
+		mServer.latency(20, 0);
+	}
+
+	@After
+	public void speedUp() {
+		mServer.latency(0, 0);
+	}
+
+	@Test
+	public void waitingReservationsAreBookedInBatches() {
+		List<Reservation> reservations = LocalServerFixture.reservations(LocalServerFixture.freeFlights(mSchedule, 20));
+		long requests = mServer.requests();
+		long sold = mServer.ticketsSold();
+
+		List<CompletableFuture<Boolean>> results = new ArrayList<CompletableFuture<Boolean>>();
+		try (BookingQueue queue = new BookingQueue(ServerInterface.INSTANCE, LocalServerFixture.TEAM, 64, 8)) {
+			for (Reservation reservation : reservations) {
+				results.add(queue.submit(reservation));
+			}
+			for (CompletableFuture<Boolean> result : results) {
+				assertTrue(result.join());
+			}
+
+			assertEquals(20, queue.booked());
+			assertTrue(queue.batches() < 20);
+		}
+
+		assertEquals(20, mServer.ticketsSold() - sold);
+		// a lock, purchase and unlock per reservation if not batched
+		assertTrue(mServer.requests() - requests < 3 * 20);
+	}
+
+	@Test
+	public void closeBooksTheReservationsWaiting() {
+		List<Reservation> reservations = LocalServerFixture.reservations(LocalServerFixture.freeFlights(mSchedule, 30));
+		long sold = mServer.ticketsSold();
+
+		BookingQueue queue = new BookingQueue(ServerInterface.INSTANCE, LocalServerFixture.TEAM, 64, 4);
+		List<CompletableFuture<Boolean>> results = new ArrayList<CompletableFuture<Boolean>>();
+		for (Reservation reservation : reservations) {
+			results.add(queue.submit(reservation));
+		}
+		queue.close();
+
+		assertEquals(0, queue.pending());
+		for (CompletableFuture<Boolean> result : results) {
+			assertTrue(result.isDone());
+			assertTrue(result.join());
+		}
+		assertEquals(30, queue.booked());
+		assertEquals(0, queue.failed());
+		assertEquals(30, mServer.ticketsSold() - sold);
+
+		CompletableFuture<Boolean> late = queue.submit(reservations.get(0));
+		assertTrue(late.isDone());
+		assertFalse(late.join());
+	}
+
+	@Test
+	public void unansweredMergedPurchaseIsNotSentAgain() {
+		List<Reservation> reservations = LocalServerFixture.reservations(LocalServerFixture.freeFlights(mSchedule, 3));
+		long sold = mServer.ticketsSold();
+
+		Transport transport = ServerInterface.INSTANCE.getTransport();
+		ServerInterface.INSTANCE.setTransport(LocalServerFixture.losingPurchaseAnswers(transport));
+		boolean[] booked;
+		try {
+			booked = ServerInterface.INSTANCE.book(LocalServerFixture.TEAM, reservations);
+		} finally {
+			ServerInterface.INSTANCE.setTransport(transport);
+		}
+
+		// bought by the merged purchase, not once more one by one
+		assertArrayEquals(new boolean[3], booked);
+		assertEquals(3, mServer.ticketsSold() - sold);
+	}
+}
@@ -0,0 +1,130 @@
+package com.altimetrik.AgentFlightBookingApplication.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.altimetrik.AgentFlightBookingApplication.LocalServerFixture;
+import com.altimetrik.AgentFlightBookingApplication.model.flight.Flight;
+import com.altimetrik.AgentFlightBookingApplication.model.reservation.Reservation;
+import com.altimetrik.AgentFlightBookingApplication.server.LocalReservationServer;
+import com.altimetrik.AgentFlightBookingApplication.server.ScheduleGenerator;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Booking sessions against a LocalReservationServer
+ */
+public class BookingSessionTest {
+	private static final String OTHER_TEAM = "Other";
+
+	private static ScheduleGenerator mSchedule;
+	private static LocalReservationServer mServer;
+
+	@BeforeClass
+	public static void startServer() throws Exception {
+		mSchedule = LocalServerFixture.schedule();
+		mServer = LocalServerFixture.start(mSchedule);
+	}
+
+	@AfterClass
+	public static void stopServer() {
+		mServer.stop();
+	}
+
+	@Before
+	public void reset() {
+		LocalServerFixture.reset();
+	}
+
+	@Test
+	public void reservationsOfASessionShareOneLock() {
+		List<Reservation> reservations = LocalServerFixture.reservations(LocalServerFixture.freeFlights(mSchedule, 2));
+		long requests = mServer.requests();
+		long sold = mServer.ticketsSold();
+
+		try (BookingSession session = ServerInterface.INSTANCE.openSession(LocalServerFixture.TEAM)) {
+			assertNotNull(session);
+			assertEquals(PurchaseOutcome.BOUGHT, session.book(reservations.get(0)));
+			assertEquals(PurchaseOutcome.BOUGHT, session.book(reservations.get(1)));
+			assertEquals(2, session.booked());
+		}
+
+		// lock, two purchases and unlock
+		assertEquals(4, mServer.requests() - requests);
+		assertEquals(2, mServer.ticketsSold() - sold);
+		assertTrue(unlocked());
+	}
+
+	@Test
+	public void expiredLeaseReleasesTheLock() throws InterruptedException {
+		Reservation reservation = LocalServerFixture.reservation(LocalServerFixture.freeFlights(mSchedule, 1).get(0));
+
+		BookingSession session = ServerInterface.INSTANCE.openSession(LocalServerFixture.TEAM, 200);
+		assertNotNull(session);
+		assertTrue(session.isHeld());
+		Thread.sleep(600);
+
+		assertFalse(session.isHeld());
+		assertEquals(PurchaseOutcome.REFUSED, session.book(reservation));
+		assertTrue(unlocked());
+		session.close();
+	}
+
+	@Test
+	public void failedPurchaseEndsTheSession() {
+		Flight unknown = new Flight();
+		unknown.setNumber(Integer.MAX_VALUE);
+		long sold = mServer.ticketsSold();
+
+		BookingSession session = ServerInterface.INSTANCE.openSession(LocalServerFixture.TEAM);
+		assertNotNull(session);
+		assertEquals(PurchaseOutcome.REFUSED, session.book(LocalServerFixture.reservation(unknown)));
+
+		assertFalse(session.isHeld());
+		assertEquals(sold, mServer.ticketsSold());
+		assertTrue(unlocked());
+	}
+
+	@Test
+	public void sessionsOfOneTeamTakeTurns() throws Exception {
+		BookingSession first = ServerInterface.INSTANCE.openSession(LocalServerFixture.TEAM);
+		assertNotNull(first);
+
+		CompletableFuture<BookingSession> second = CompletableFuture
+				.supplyAsync(() -> ServerInterface.INSTANCE.openSession(LocalServerFixture.TEAM));
+		Thread.sleep(300);
+		assertFalse(second.isDone());
+
+		first.close();
+		try (BookingSession next = second.get(5, TimeUnit.SECONDS)) {
+			assertNotNull(next);
+			assertTrue(next.isHeld());
+		}
+		assertTrue(unlocked());
+	}
+
+	/**
+	 * @return true if another team can take the server lock
+	 */
+	private static boolean unlocked() {
+		if (!ServerInterface.INSTANCE.lock(OTHER_TEAM)) {
+			return false;
+		}
+		ServerInterface.INSTANCE.unlock(OTHER_TEAM);
+		return true;
+	}
+}
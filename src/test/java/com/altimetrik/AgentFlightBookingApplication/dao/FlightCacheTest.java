@@ -0,0 +1,50 @@
+package com.altimetrik.AgentFlightBookingApplication.dao;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.altimetrik.AgentFlightBookingApplication.model.flight.Flights;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Downloads racing the invalidation of their airport
+ */
+public class FlightCacheTest {
+	private static final String DATE = "2017_05_02";
+
+	@Test
+	public void downloadStartedBeforeAnInvalidationIsNotStored() {
+		FlightCache cache = new FlightCache(16, 10, TimeUnit.MINUTES);
+		long bos = cache.generation("BOS");
+		long jfk = cache.generation("JFK");
+
+		cache.invalidate("BOS");
+		assertFalse(cache.put("BOS", DATE, new Flights(), bos));
+		assertNull(cache.get("BOS", DATE));
+		assertTrue(cache.put("JFK", DATE, new Flights(), jfk));
+		assertNotNull(cache.get("JFK", DATE));
+
+		assertTrue(cache.put("BOS", DATE, new Flights(), cache.generation("BOS")));
+		assertNotNull(cache.get("BOS", DATE));
+	}
+
+	@Test
+	public void downloadStartedBeforeTheCacheIsEmptiedIsNotStored() {
+		FlightCache cache = new FlightCache(16, 10, TimeUnit.MINUTES);
+		long generation = cache.generation("BOS");
+
+		cache.invalidateAll();
+		assertFalse(cache.put("BOS", DATE, new Flights(), generation));
+		assertNull(cache.get("BOS", DATE));
+	}
+}
@@ -0,0 +1,220 @@
+package com.altimetrik.AgentFlightBookingApplication.model.flight;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.altimetrik.AgentFlightBookingApplication.LocalServerFixture;
+import com.altimetrik.AgentFlightBookingApplication.dao.ServerInterface;
+import com.altimetrik.AgentFlightBookingApplication.model.airplane.AirplaneCatalog;
+import com.altimetrik.AgentFlightBookingApplication.model.reservation.Reservation;
+import com.altimetrik.AgentFlightBookingApplication.server.LocalReservationServer;
+import com.altimetrik.AgentFlightBookingApplication.server.ScheduleGenerator;
+import com.altimetrik.AgentFlightBookingApplication.utils.ServerTime;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * Seat holds on flights of a LocalReservationServer
+ */
+public class SeatLedgerTest {
+	private static final int THREADS = 8;
+	private static final int AGENTS = 4;
+
+	private static ScheduleGenerator mSchedule;
+	private static LocalReservationServer mServer;
+
+	@BeforeClass
+	public static void startServer() throws Exception {
+		mSchedule = LocalServerFixture.schedule();
+		mServer = LocalServerFixture.start(mSchedule);
+	}
+
+	@AfterClass
+	public static void stopServer() {
+		mServer.stop();
+	}
+
+	@Before
+	public void reset() {
+		LocalServerFixture.reset();
+	}
+
+	@Test
+	public void concurrentHoldsNeverOversubscribeAFlight() throws Exception {
+		SeatLedger ledger = new SeatLedger(1, TimeUnit.MINUTES);
+		Flight flight = LocalServerFixture.freeFlights(mSchedule, 1).get(0);
+		int free = freeSeats(flight);
+		List<Flight> legs = Collections.singletonList(flight);
+
+		List<Callable<Boolean>> holds = new ArrayList<Callable<Boolean>>();
+		for (int i = 0; i < free + 20; i++) {
+			holds.add(() -> ledger.hold(legs, true) != null);
+		}
+		List<Boolean> held = concurrently(holds);
+
+		assertEquals(free, Collections.frequency(held, true));
+		assertEquals(20, ledger.refused());
+		assertEquals(free, ledger.held(flight, true));
+		assertFalse(ledger.isAvailable(flight, true));
+	}
+
+	@Test
+	public void holdIsTakenOnAllLegsOrNone() {
+		SeatLedger ledger = new SeatLedger(1, TimeUnit.MINUTES);
+		List<Flight> flights = LocalServerFixture.freeFlights(mSchedule, 2);
+		Flight open = flights.get(0);
+		Flight full = flights.get(1);
+		for (int i = freeSeats(full); i > 0; i--) {
+			assertNotNull(ledger.hold(Collections.singletonList(full), true));
+		}
+
+		assertNull(ledger.hold(Arrays.asList(open, full), true));
+		assertEquals(0, ledger.held(open, true));
+	}
+
+	@Test
+	public void sameNumberOnAnotherDayIsAnotherFlight() {
+		SeatLedger ledger = new SeatLedger(1, TimeUnit.MINUTES);
+		Flight today = LocalServerFixture.freeFlights(mSchedule, 1).get(0);
+		Flight tomorrow = new Flight();
+		tomorrow.setNumber(today.getNumber());
+		tomorrow.setAirplane(today.getAirplane());
+		tomorrow.setDepartureTime(ServerTime.formatLocal(today.getDepartureEpochMinute() + ServerTime.MINUTES_PER_DAY,
+				ZoneId.of("GMT")));
+		tomorrow.setCoachBooked(0);
+
+		for (int i = freeSeats(today); i > 0; i--) {
+			assertNotNull(ledger.hold(Collections.singletonList(today), true));
+		}
+		assertFalse(ledger.isAvailable(today, true));
+		assertTrue(ledger.isAvailable(tomorrow, true));
+		assertEquals(0, ledger.held(tomorrow, true));
+		assertNotNull(ledger.hold(Collections.singletonList(tomorrow), true));
+	}
+
+	@Test
+	public void confirmedAndReleasedHoldsLeaveTheQueue() {
+		SeatLedger ledger = new SeatLedger(1, TimeUnit.MINUTES);
+		Flight flight = LocalServerFixture.freeFlights(mSchedule, 1).get(0);
+		List<Flight> legs = Collections.singletonList(flight);
+
+		SeatLedger.Hold bought = ledger.hold(legs, true);
+		SeatLedger.Hold abandoned = ledger.hold(legs, true);
+		assertEquals(2, ledger.holds());
+
+		ledger.confirm(bought);
+		ledger.release(abandoned);
+		assertEquals(0, ledger.holds());
+		assertEquals(0, ledger.held(flight, true));
+		assertEquals(flight.getCoachBooked() + 1, ledger.sold(flight, true));
+	}
+
+	@Test
+	public void expiredHoldIsReleased() throws InterruptedException {
+		SeatLedger ledger = new SeatLedger(100, TimeUnit.MILLISECONDS);
+		Flight flight = LocalServerFixture.freeFlights(mSchedule, 1).get(0);
+
+		SeatLedger.Hold hold = ledger.hold(Collections.singletonList(flight), true);
+		assertEquals(1, ledger.held(flight, true));
+
+		// holds are swept every second
+		long deadline = System.currentTimeMillis() + 5000;
+		while (hold.isActive() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		assertFalse(hold.isActive());
+		assertEquals(1, ledger.expired());
+		assertEquals(0, ledger.held(flight, true));
+		assertEquals(0, ledger.holds());
+
+		// a purchase answered after the hold expired still counts
+		ledger.confirm(hold);
+		assertEquals(flight.getCoachBooked() + 1, ledger.sold(flight, true));
+		assertEquals(0, ledger.held(flight, true));
+	}
+
+	@Test
+	public void oversubscribedBookingsNeverReachTheServer() throws Exception {
+		Flight flight = LocalServerFixture.freeFlights(mSchedule, 1).get(0);
+		int free = freeSeats(flight);
+		long sold = mServer.ticketsSold();
+		long refused = SeatLedger.getInstance().refused();
+
+		// a few agents each booking a share of the reservations at once
+		List<List<Reservation>> shares = new ArrayList<List<Reservation>>();
+		for (int i = 0; i < AGENTS; i++) {
+			shares.add(new ArrayList<Reservation>());
+		}
+		for (int i = 0; i < free + 5; i++) {
+			shares.get(i % AGENTS).add(LocalServerFixture.reservation(flight));
+		}
+		List<Callable<boolean[]>> agents = new ArrayList<Callable<boolean[]>>();
+		for (List<Reservation> share : shares) {
+			agents.add(() -> ServerInterface.INSTANCE.book(LocalServerFixture.TEAM, share));
+		}
+
+		int booked = 0;
+		for (boolean[] results : concurrently(agents)) {
+			for (boolean result : results) {
+				booked += result ? 1 : 0;
+			}
+		}
+		assertEquals(free, booked);
+		assertEquals(free, mServer.ticketsSold() - sold);
+		assertEquals(5, SeatLedger.getInstance().refused() - refused);
+		assertEquals(flight.getCoachBooked() + free, SeatLedger.getInstance().sold(flight, true));
+	}
+
+	private static int freeSeats(Flight flight) {
+		return AirplaneCatalog.getInstance().coachSeats(flight.getAirplane()) - flight.getCoachBooked();
+	}
+
+	/**
+	 * run the tasks on several threads started together
+	 */
+	private static <T> List<T> concurrently(List<Callable<T>> tasks) throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+			for (Callable<T> task : tasks) {
+				futures.add(pool.submit(() -> {
+					start.await();
+					return task.call();
+				}));
+			}
+			start.countDown();
+
+			List<T> results = new ArrayList<T>(tasks.size());
+			for (Future<T> future : futures) {
+				results.add(future.get());
+			}
+			return results;
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
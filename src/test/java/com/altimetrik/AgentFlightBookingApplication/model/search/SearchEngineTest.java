@@ -0,0 +1,186 @@
+package com.altimetrik.AgentFlightBookingApplication.model.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.altimetrik.AgentFlightBookingApplication.LocalServerFixture;
+import com.altimetrik.AgentFlightBookingApplication.model.airport.Airport;
+import com.altimetrik.AgentFlightBookingApplication.model.flight.Flight;
+import com.altimetrik.AgentFlightBookingApplication.model.flight.Flights;
+import com.altimetrik.AgentFlightBookingApplication.model.reservation.Reservation;
+import com.altimetrik.AgentFlightBookingApplication.model.reservation.SortKey;
+import com.altimetrik.AgentFlightBookingApplication.server.LocalReservationServer;
+import com.altimetrik.AgentFlightBookingApplication.server.ScheduleGenerator;
+
+/**
+ *
+ * @author Sonu Agrawal
+ *
+ */
+/**
+ * The search engines compared on every airport pair of a generated network
+ */
+public class SearchEngineTest {
+	private static ScheduleGenerator mSchedule;
+	private static LocalReservationServer mServer;
+
+	@BeforeClass
+	public static void startServer() throws Exception {
+		mSchedule = LocalServerFixture.schedule();
+		mServer = LocalServerFixture.start(mSchedule);
+	}
+
+	@AfterClass
+	public static void stopServer() {
+		mServer.stop();
+	}
+
+	@Test
+	public void timeExpandedFindsTheBreadthFirstItinerariesInOrder() throws ParseException {
+		int itineraries = 0;
+		for (SearchFlight search : searches()) {
+			List<String> bfs = identities(search(search, SearchEngine.BFS));
+			List<String> timeExpanded = identities(search(search, SearchEngine.TIME_EXPANDED));
+
+			assertEquals(search.toString(), bfs, timeExpanded);
+			itineraries += bfs.size();
+		}
+		assertTrue("the network has connections", itineraries > 0);
+	}
+
+	@Test
+	public void paretoKeepsTheBreadthFirstItinerariesNoneBeats() throws ParseException {
+		for (SearchFlight search : searches()) {
+			List<Flights> bfs = search(search, SearchEngine.BFS);
+			List<Flights> pareto = search(search, SearchEngine.PARETO);
+
+			List<String> bfsIdentities = identities(bfs);
+			for (Flights itinerary : pareto) {
+				assertTrue(search + identity(itinerary), bfsIdentities.contains(identity(itinerary)));
+			}
+			for (Flights itinerary : bfs) {
+				assertTrue(search + identity(itinerary), isMatched(pareto, itinerary));
+			}
+		}
+	}
+
+	@Test
+	public void topKIsTheBreadthFirstOrderCutToK() throws ParseException {
+		int k = 5;
+		for (SortKey sortKey : SortKey.values()) {
+			for (SearchFlight search : searches()) {
+				List<Flights> bfs = search(search, SearchEngine.BFS);
+				List<Long> expected = keys(bfs, sortKey);
+				Collections.sort(expected);
+				expected = expected.subList(0, Math.min(k, expected.size()));
+
+				List<Flights> streamed = new ArrayList<Flights>();
+				List<Flights> top = search.searchTop(k, sortKey, streamed::add);
+
+				// itineraries with equal keys may come in another order
+				String message = sortKey + " " + search;
+				assertEquals(message, expected, keys(top, sortKey));
+				assertEquals(message, identities(top), identities(streamed));
+				assertTrue(message, identities(bfs).containsAll(identities(top)));
+			}
+		}
+	}
+
+	@Test
+	public void unknownEngineFallsBackToBreadthFirst() {
+		String engine = System.getProperty("search.engine");
+		System.setProperty("search.engine", "no such engine");
+		try {
+			assertEquals(SearchEngine.BFS, SearchEngine.configured());
+		} finally {
+			if (engine == null) {
+				System.clearProperty("search.engine");
+			} else {
+				System.setProperty("search.engine", engine);
+			}
+		}
+	}
+
+	/**
+	 * a search with stop overs for every ordered pair of airports
+	 */
+	private static List<SearchFlight> searches() {
+		List<SearchFlight> searches = new ArrayList<SearchFlight>();
+		for (Airport departure : mSchedule.airports()) {
+			for (Airport arrival : mSchedule.airports()) {
+				if (departure != arrival) {
+					searches.add(new SearchFlight(departure.code(), arrival.code(), mSchedule.date(1), "Coach", true));
+				}
+			}
+		}
+		return searches;
+	}
+
+	private static List<Flights> search(SearchFlight search, SearchEngine engine) throws ParseException {
+		search.engine(engine);
+		return search.search();
+	}
+
+	/**
+	 * true if an itinerary of the set is as good as the itinerary on coach
+	 * price, elapsed minutes and legs
+	 */
+	private static boolean isMatched(List<Flights> set, Flights itinerary) {
+		for (Flights other : set) {
+			if (price(other) <= price(itinerary) && elapsed(other) <= elapsed(itinerary)
+					&& other.size() <= itinerary.size()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static List<Long> keys(List<Flights> itineraries, SortKey sortKey) {
+		List<Long> keys = new ArrayList<Long>(itineraries.size());
+		for (Flights itinerary : itineraries) {
+			keys.add(sortKey.key(new Reservation(itinerary, "Coach", 0)));
+		}
+		return keys;
+	}
+
+	private static long price(Flights itinerary) {
+		long cents = 0;
+		for (Flight flight : itinerary) {
+			cents += flight.getCoachPriceCents();
+		}
+		return cents;
+	}
+
+	private static long elapsed(Flights itinerary) {
+		return itinerary.get(itinerary.size() - 1).getArrivalEpochMinute() - itinerary.get(0).getDepartureEpochMinute();
+	}
+
+	/**
+	 * identify every leg by number and departure minute, as flight numbers
+	 * repeat on other days
+	 */
+	private static String identity(Flights itinerary) {
+		StringBuffer sb = new StringBuffer();
+		for (Flight flight : itinerary) {
+			sb.append(flight.getNumber()).append('@').append(flight.getDepartureEpochMinute()).append(' ');
+		}
+		return sb.toString();
+	}
+
+	private static List<String> identities(List<Flights> itineraries) {
+		List<String> identities = new ArrayList<String>(itineraries.size());
+		for (Flights itinerary : itineraries) {
+			identities.add(identity(itinerary));
+		}
+		return identities;
+	}
+}